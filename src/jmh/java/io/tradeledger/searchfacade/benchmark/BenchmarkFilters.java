@@ -0,0 +1,97 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the raw filter request parameter shared by the benchmarks.
+ *
+ * <p>The first filter has the benchmarked value type; further filters are added
+ * on the remaining attributes, since an attribute may only be filtered once.
+ * Every filter matches the documents seeded by {@link #matchingDocument}.
+ */
+final class BenchmarkFilters {
+
+    static final String STRING = "string";
+    static final String NUMBER = "number";
+    static final String BOOLEAN = "boolean";
+    static final String RANGE = "range";
+
+    // As configured by default, matching the sample data
+    static final LanguageSchema SCHEMA = new LanguageSchema("isJvmBased:string");
+
+    private static final String LANGUAGE = "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}";
+    private static final String VERSION = "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":7}";
+    private static final String VERSION_RANGE = "{\"attribute\":\"version\",\"operator\":\"eq\",\"range\":{\"from\":7,\"to\":8}}";
+    private static final String JVM_BASED = "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":\"true\"}";
+
+    private BenchmarkFilters() {
+    }
+
+    /**
+     * Returns the filter parameter as received by the controller, i.e. the
+     * filter values joined by commas.
+     *
+     * @param filterCount the number of filters, from 1 to 3
+     * @param valueType the value type of the first filter
+     * @return the raw filter parameter
+     */
+    static String parameter(int filterCount, String valueType) {
+        List<String> filters = new ArrayList<>();
+        filters.add(first(valueType));
+
+        for (String filter : new String[]{LANGUAGE, VERSION, JVM_BASED}) {
+            if (filters.size() < filterCount && !sameAttribute(filters.get(0), filter)) {
+                filters.add(filter);
+            }
+        }
+
+        if (filters.size() != filterCount) {
+            throw new IllegalArgumentException("Invalid filter count: " + filterCount);
+        }
+
+        return String.join(",", filters);
+    }
+
+    /**
+     * Returns a stored document matched by every benchmark filter, with the
+     * boolean stored as a string as in the sample data.
+     */
+    static Document matchingDocument(int i) {
+        return new Document("language", "Java")
+                .append("version", 7 + i % 2)
+                .append("isJvmBased", "true");
+    }
+
+    /**
+     * Returns a stored document matched by none of the benchmark filters.
+     */
+    static Document otherDocument() {
+        return new Document("language", "Kotlin")
+                .append("version", 1)
+                .append("isJvmBased", "false");
+    }
+
+    private static String first(String valueType) {
+        switch (valueType) {
+            case STRING:
+                return LANGUAGE;
+            case NUMBER:
+                return VERSION;
+            case BOOLEAN:
+                return JVM_BASED;
+            case RANGE:
+                return VERSION_RANGE;
+            default:
+                throw new IllegalArgumentException("Invalid value type: " + valueType);
+        }
+    }
+
+    private static boolean sameAttribute(String filter, String other) {
+        return filter.substring(0, filter.indexOf(',')).equals(other.substring(0, other.indexOf(',')));
+    }
+
+}
@@ -0,0 +1,124 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import io.tradeledger.searchfacade.repository.LanguageSearchRepositoryImpl;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole paged search, from the raw filter parameter to the JSON
+ * response body, against an in-memory MongoDB stand-in.
+ *
+ * <p>The stand-in keeps the wire protocol and the driver in the path but not a
+ * real storage engine, so results are for comparing changes to this code rather
+ * than for predicting production latency. The result caches are not involved.
+ * Searches are answered either by MongoDB or by the in-process replica.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EndToEndBenchmark {
+
+    private static final int OTHER_DOCUMENTS = 100;
+    private static final String REPLICA = "replica";
+
+    @Param({"1", "3"})
+    private int filterCount;
+
+    @Param({BenchmarkFilters.STRING, BenchmarkFilters.RANGE})
+    private String valueType;
+
+    @Param({"1", "10", "100", "1000"})
+    private int resultSize;
+
+    @Param({"mongo", REPLICA})
+    private String source;
+
+    private MongoServer server;
+    private MongoClient client;
+    private LanguageReplica replica;
+    private LanguageSearchRepositoryImpl repository;
+    private ObjectWriter listWriter;
+    private String filters;
+    private SearchPageRequest pageRequest;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        server = new MongoServer(new MemoryBackend());
+        client = new MongoClient(new ServerAddress(server.bind()));
+        MongoTemplate operations = new MongoTemplate(client, "benchmark");
+
+        List<Document> documents = new ArrayList<>(resultSize + OTHER_DOCUMENTS);
+        for (int i = 0; i < resultSize; i++) {
+            documents.add(BenchmarkFilters.matchingDocument(i));
+        }
+        for (int i = 0; i < OTHER_DOCUMENTS; i++) {
+            documents.add(BenchmarkFilters.otherDocument());
+        }
+        operations.getCollection(operations.getCollectionName(Language.class)).insertMany(documents);
+
+        // Never stale within a run, as nothing is written
+        replica = new LanguageReplica(operations, REPLICA.equals(source), TimeUnit.DAYS.toMillis(1), 1000, 1000);
+        replica.start();
+        while (REPLICA.equals(source) && !replica.getColumns().isPresent()) {
+            Thread.sleep(10);
+        }
+
+        repository = new LanguageSearchRepositoryImpl(operations, new QueryPlanCache(1000), replica,
+                SearchMetrics.disabled(), SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 500);
+        listWriter = Jackson2ObjectMapperBuilder.json().build()
+                .writerFor(new TypeReference<List<Language>>() {});
+        filters = BenchmarkFilters.parameter(filterCount, valueType);
+        pageRequest = SearchPageRequest.first(resultSize);
+        outputStream = new ByteArrayOutputStream(resultSize * 128);
+    }
+
+    @TearDown
+    public void tearDown() {
+        replica.stop();
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Benchmark
+    public int search() throws IOException {
+        SearchPage<Language> page = repository.search(
+                LanguageFilterParser.parse(BenchmarkFilters.SCHEMA, filters), pageRequest);
+        outputStream.reset();
+        listWriter.writeValue(outputStream, page.getContent());
+        return outputStream.size();
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the filter request parameter into {@link LanguageFilter}s,
+ * including the validation of range filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilterParsingBenchmark {
+
+    @Param({"1", "2", "3"})
+    private int filterCount;
+
+    @Param({BenchmarkFilters.STRING, BenchmarkFilters.NUMBER, BenchmarkFilters.BOOLEAN, BenchmarkFilters.RANGE})
+    private String valueType;
+
+    private String filters;
+
+    @Setup
+    public void setUp() {
+        filters = BenchmarkFilters.parameter(filterCount, valueType);
+    }
+
+    @Benchmark
+    public Filter[] parse() {
+        return LanguageFilterParser.parse(BenchmarkFilters.SCHEMA, filters);
+    }
+
+}
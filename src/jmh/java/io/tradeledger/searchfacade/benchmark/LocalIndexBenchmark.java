@@ -0,0 +1,84 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.replica.LanguageColumns;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating filters against the read replica's indexes and bitmaps,
+ * without reading the matching rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalIndexBenchmark {
+
+    private static final int ROW_COUNT = 100000;
+
+    @Param({"1", "2", "3"})
+    private int filterCount;
+
+    @Param({BenchmarkFilters.STRING, BenchmarkFilters.NUMBER, BenchmarkFilters.BOOLEAN, BenchmarkFilters.RANGE})
+    private String valueType;
+
+    @Param({"10", "1000"})
+    private int resultSize;
+
+    private Filter[] filters;
+    private LanguageColumns columns;
+
+    @Setup
+    public void setUp() {
+        filters = LanguageFilterParser.parse(BenchmarkFilters.SCHEMA,
+                BenchmarkFilters.parameter(filterCount, valueType));
+
+        List<Document> documents = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Document document = i % (ROW_COUNT / resultSize) == 0
+                    ? BenchmarkFilters.matchingDocument(i)
+                    : BenchmarkFilters.otherDocument();
+            documents.add(document.append("_id", new ObjectId()));
+        }
+        columns = LanguageColumns.of(documents, 1000);
+        // Indexes and bitmaps are built on first use
+        columns.match(filters);
+    }
+
+    /**
+     * Intersects the posting lists of the filters' conditions.
+     */
+    @Benchmark
+    public int[] find() {
+        return columns.find(filters);
+    }
+
+    /**
+     * Intersects the cached bitmaps of the filters.
+     */
+    @Benchmark
+    public RoaringBitmap match() {
+        return columns.match(filters);
+    }
+
+    @Benchmark
+    public OptionalInt count() {
+        return columns.count(filters);
+    }
+
+}
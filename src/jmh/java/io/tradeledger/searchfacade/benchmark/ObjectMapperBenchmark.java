@@ -0,0 +1,50 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.tradeledger.searchfacade.model.Language;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of setting up Jackson, i.e. what is paid whenever an
+ * {@link ObjectMapper} or writer is built per request rather than shared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObjectMapperBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Benchmark
+    public ObjectMapper newObjectMapper() {
+        return new ObjectMapper();
+    }
+
+    /**
+     * Builds the mapper as Spring Boot configures the application's one.
+     */
+    @Benchmark
+    public ObjectMapper buildObjectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * Builds the writer the controller derives from the shared mapper.
+     */
+    @Benchmark
+    public ObjectWriter languageWriter() {
+        return objectMapper.writerFor(Language.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+}
@@ -0,0 +1,119 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import io.tradeledger.searchfacade.repository.LanguageSearchRepositoryImpl;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import io.tradeledger.searchfacade.repository.SearchRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures turning parsed filters into a MongoDB query, both through
+ * {@link Filter#getCriteria()} and through the cached query plans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryBuildingBenchmark {
+
+    @Param({"1", "2", "3"})
+    private int filterCount;
+
+    @Param({BenchmarkFilters.STRING, BenchmarkFilters.NUMBER, BenchmarkFilters.BOOLEAN, BenchmarkFilters.RANGE})
+    private String valueType;
+
+    private Filter[] filters;
+    private SearchRepository<Language> criteriaRepository;
+    private SearchRepository<Language> plannedRepository;
+    private SearchPageRequest pageRequest;
+
+    @Setup
+    public void setUp() {
+        filters = LanguageFilterParser.parse(BenchmarkFilters.SCHEMA,
+                BenchmarkFilters.parameter(filterCount, valueType));
+        criteriaRepository = new CriteriaSearchRepository();
+        // Building queries does not touch the database
+        plannedRepository = new LanguageSearchRepositoryImpl(null, new QueryPlanCache(1000),
+                new LanguageReplica(null, false, 0, 0, 0), SearchMetrics.disabled(),
+                SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 500);
+        pageRequest = SearchPageRequest.first(100);
+    }
+
+    @Benchmark
+    public void getCriteria(Blackhole blackhole) {
+        for (Filter filter : filters) {
+            blackhole.consume(filter.getCriteria());
+        }
+    }
+
+    /**
+     * Builds the query from the filters' criteria, as {@link SearchRepository} does by default.
+     */
+    @Benchmark
+    public Query getCriteriaQuery() {
+        return criteriaRepository.getQuery(filters);
+    }
+
+    /**
+     * Builds the query by binding the filter values to the cached plan for their shape.
+     */
+    @Benchmark
+    public Query getPlannedQuery() {
+        return plannedRepository.getQuery(filters);
+    }
+
+    @Benchmark
+    public Query getPageQuery() {
+        return plannedRepository.getQuery(filters, pageRequest);
+    }
+
+    /**
+     * Leaves the query building to the default methods.
+     */
+    private static final class CriteriaSearchRepository implements SearchRepository<Language> {
+
+        @Override
+        public List<Language> search(Filter[] filters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SearchPage<Language> search(Filter[] filters, SearchPageRequest pageRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Stream<Language> stream(Filter[] filters, Projection projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long count(Filter[] filters) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package io.tradeledger.searchfacade.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.tradeledger.searchfacade.cache.LanguageCaches;
+import io.tradeledger.searchfacade.cache.LanguageResponseCache;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing search results as a JSON array, with Jackson and from cached
+ * fragments as the paged search does, and as newline-delimited JSON, as the
+ * streamed search does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int resultSize;
+
+    private List<Language> languages;
+    private ObjectMapper objectMapper;
+    private ObjectWriter listWriter;
+    private ObjectWriter languageWriter;
+    private LanguageResponseCache responseCache;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setUp() {
+        languages = new ArrayList<>(resultSize);
+        for (int i = 0; i < resultSize; i++) {
+            languages.add(new Language(Integer.toHexString(i), "Java", 7 + i % 2, true));
+        }
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listWriter = objectMapper.writerFor(new TypeReference<List<Language>>() {});
+        languageWriter = objectMapper.writerFor(Language.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        responseCache = new LanguageResponseCache(
+                new CaffeineCacheManager(LanguageCaches.FRAGMENTS, LanguageCaches.SEARCH_RESPONSES), objectMapper);
+        outputStream = new ByteArrayOutputStream(resultSize * 128);
+    }
+
+    @Benchmark
+    public int writeList() throws IOException {
+        outputStream.reset();
+        listWriter.writeValue(outputStream, languages);
+        return outputStream.size();
+    }
+
+    /**
+     * Assembles the array from cached fragments, which are all cached after the first call.
+     */
+    @Benchmark
+    public int writeCachedList() throws IOException {
+        outputStream.reset();
+        responseCache.serialize(new SearchPage<>(languages, null)).getBody().writeTo(outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public int writeNdjson() throws IOException {
+        outputStream.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+            for (Language language : languages) {
+                languageWriter.writeValue(generator, language);
+                generator.writeRaw('\n');
+            }
+        }
+        return outputStream.size();
+    }
+
+}
@@ -0,0 +1,144 @@
+package io.tradeledger.searchfacade.admission;
+
+import io.tradeledger.searchfacade.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of MongoDB queries in flight, and adapts the cap to how fast
+ * the database answers.
+ *
+ * <p>The limit is adjusted by additive increase and multiplicative decrease: every
+ * query answered within the target latency while the limit is used up raises it
+ * by one over the limit, i.e. by about one per limit's worth of queries, and every
+ * slower query lowers it by a tenth. Queries beyond the limit are rejected at once
+ * rather than queued, so that excess load does not pile up behind a slow database.
+ *
+ * <p>Queries whose results are consumed later, e.g. streamed from a cursor or
+ * emitted by a publisher, hold a {@link Permit} until they are done. Their latency
+ * is taken once their first batch has arrived, see {@link Permit#recordLatency()},
+ * so that clients reading slowly do not lower the limit for everyone else.
+ */
+@Component
+public class AdaptiveConcurrencyLimit {
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimit(@Value("${searchfacade.admission.concurrency.initial-limit}") int initialLimit,
+                                    @Value("${searchfacade.admission.concurrency.min-limit}") int minLimit,
+                                    @Value("${searchfacade.admission.concurrency.max-limit}") int maxLimit,
+                                    @Value("${searchfacade.admission.concurrency.target-latency-ms}") long targetLatencyMs) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Returns a limit that admits every query, e.g. for repositories set up outside the application context.
+     */
+    public static AdaptiveConcurrencyLimit unlimited() {
+        return new AdaptiveConcurrencyLimit(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs a query if the limit allows it.
+     *
+     * @param query the query
+     * @return the result of the query
+     * @throws TooManyRequestsException if the limit is reached
+     */
+    public <T> T execute(Supplier<T> query) {
+        Permit permit = acquire();
+        try {
+            return query.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Admits a query if the limit allows it, until the returned permit is released.
+     *
+     * @return the permit, to be released once the query is done
+     * @throws TooManyRequestsException if the limit is reached
+     */
+    public Permit acquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                throw new TooManyRequestsException("too many concurrent queries", 1);
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        return new Permit(System.nanoTime(), current + 1 >= getLimit());
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * A query admitted by {@link #acquire()}.
+     */
+    public final class Permit {
+
+        private final long startedAt;
+        private final boolean saturated;
+        private final AtomicBoolean measured = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startedAt, boolean saturated) {
+            this.startedAt = startedAt;
+            this.saturated = saturated;
+        }
+
+        /**
+         * Adapts the limit to how long the query has taken so far, e.g. once the first
+         * batch of a cursor has arrived, so that the time taken by the caller to consume
+         * the rest does not count. Only the first call, or else the release, has an effect.
+         */
+        public void recordLatency() {
+            if (!measured.get() && measured.compareAndSet(false, true)) {
+                update(System.nanoTime() - startedAt, saturated);
+            }
+        }
+
+        /**
+         * Ends the query, adapting the limit to how long it took unless already recorded.
+         * Releasing it again has no effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                recordLatency();
+            }
+        }
+
+    }
+
+    private synchronized void update(long latencyNanos, boolean saturated) {
+        if (latencyNanos > targetLatencyNanos) {
+            limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.tradeledger.searchfacade.admission;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admits requests to the language endpoints through the rate limiter before they
+ * are handled, so that excess load is rejected with a 429 response straight away.
+ *
+ * <p>Clients are identified by their {@value #API_KEY} header, or else by their
+ * address. Requests with filters are weighted by their estimated cost.
+ */
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    public static final String API_KEY = "X-API-Key";
+
+    private final RateLimiter rateLimiter;
+    private final QueryCostEstimator costEstimator;
+    private final LanguageSchema schema;
+
+    public AdmissionInterceptor(RateLimiter rateLimiter, QueryCostEstimator costEstimator, LanguageSchema schema) {
+        this.rateLimiter = rateLimiter;
+        this.costEstimator = costEstimator;
+        this.schema = schema;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String apiKey = request.getHeader(API_KEY);
+        String client = apiKey != null ? "key:" + apiKey : "address:" + request.getRemoteAddr();
+
+        rateLimiter.acquire(client, getCost(request.getParameterValues("filter")));
+        return true;
+    }
+
+    private double getCost(String[] filters) {
+        if (filters == null) {
+            return 1;
+        }
+
+        try {
+            return costEstimator.getCost(LanguageFilterParser.parse(schema, filters));
+        } catch (InvalidParameterException ex) {
+            // Rejected by the controller
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package io.tradeledger.searchfacade.admission;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distribution of an attribute's values in a sample of the collection: the
+ * most common values with their frequencies, the number of distinct values, and
+ * an equi-depth histogram of the numeric values.
+ */
+final class AttributeStatistics {
+
+    // As commonly assumed for ranges nothing is known about
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+
+    private final int sampled;
+    private final Map<Object, Double> frequentValues;
+    private final double otherFraction;
+    private final int otherDistinct;
+    private final double numericFraction;
+    private final double[] bounds;
+
+    private AttributeStatistics(int sampled, Map<Object, Double> frequentValues, double otherFraction,
+                                int otherDistinct, double numericFraction, double[] bounds) {
+        this.sampled = sampled;
+        this.frequentValues = frequentValues;
+        this.otherFraction = otherFraction;
+        this.otherDistinct = otherDistinct;
+        this.numericFraction = numericFraction;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Summarises the sampled values of an attribute.
+     *
+     * @param values the values, with null for documents without the attribute
+     * @param buckets the number of most common values and of histogram buckets to keep
+     * @return the statistics
+     */
+    static AttributeStatistics of(List<Object> values, int buckets) {
+        Map<Object, Integer> counts = new HashMap<>();
+        List<Double> numbers = new ArrayList<>();
+        for (Object value : values) {
+            if (value != null) {
+                Object key = normalize(value);
+                counts.merge(key, 1, Integer::sum);
+                if (key instanceof Double) {
+                    numbers.add((Double) key);
+                }
+            }
+        }
+
+        int sampled = values.size();
+        List<Map.Entry<Object, Integer>> byCount = new ArrayList<>(counts.entrySet());
+        byCount.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+
+        Map<Object, Double> frequentValues = new HashMap<>();
+        int other = 0;
+        for (int i = 0; i < byCount.size(); i++) {
+            if (i < buckets) {
+                frequentValues.put(byCount.get(i).getKey(), (double) byCount.get(i).getValue() / sampled);
+            } else {
+                other += byCount.get(i).getValue();
+            }
+        }
+
+        Collections.sort(numbers);
+        double[] bounds = new double[numbers.isEmpty() ? 0 : Math.min(buckets, numbers.size()) + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            // Each bucket holds the same number of values
+            bounds[i] = numbers.get((int) ((long) i * (numbers.size() - 1) / Math.max(1, bounds.length - 1)));
+        }
+
+        return new AttributeStatistics(sampled, frequentValues, sampled == 0 ? 0 : (double) other / sampled,
+                counts.size() - frequentValues.size(), sampled == 0 ? 0 : (double) numbers.size() / sampled, bounds);
+    }
+
+    /**
+     * Returns the estimated fraction of documents whose attribute equals a value.
+     */
+    double equalTo(Object value) {
+        if (sampled == 0) {
+            return 0;
+        }
+
+        Double frequency = frequentValues.get(normalize(value));
+        if (frequency != null) {
+            return frequency;
+        }
+        // Less common values are assumed to be equally common, and unseen ones rarer than any seen
+        return otherDistinct > 0 ? otherFraction / otherDistinct : 0.5 / sampled;
+    }
+
+    /**
+     * Returns the estimated fraction of documents whose attribute lies in a range.
+     *
+     * @param from the inclusive lower bound, or null if unbounded
+     * @param to the inclusive upper bound, or null if unbounded
+     */
+    double between(Object from, Object to) {
+        if ((from != null && !(from instanceof Number)) || (to != null && !(to instanceof Number))) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        if (bounds.length == 0) {
+            return 0;
+        }
+
+        double upper = to == null ? 1 : fractionBelow(((Number) to).doubleValue(), true);
+        double lower = from == null ? 0 : fractionBelow(((Number) from).doubleValue(), false);
+        return numericFraction * Math.max(0, upper - lower);
+    }
+
+    /**
+     * Returns the fraction of numeric values below a value, or at most the value if inclusive,
+     * interpolating linearly within the bucket the value falls into.
+     */
+    private double fractionBelow(double value, boolean inclusive) {
+        int buckets = bounds.length - 1;
+        if (buckets == 0) {
+            return (inclusive ? value >= bounds[0] : value > bounds[0]) ? 1 : 0;
+        }
+
+        double fraction = 0;
+        for (int i = 0; i < buckets; i++) {
+            double low = bounds[i];
+            double high = bounds[i + 1];
+            if (inclusive ? value >= high : value > high) {
+                fraction += 1;
+            } else if (inclusive ? value >= low : value > low) {
+                fraction += (value - low) / (high - low);
+            }
+        }
+        return fraction / buckets;
+    }
+
+    /**
+     * Compares numbers by value, so that e.g. 8 and 8.0 are counted as the same value.
+     */
+    private static Object normalize(Object value) {
+        return value instanceof Number ? (Object) ((Number) value).doubleValue() : value;
+    }
+
+}
@@ -0,0 +1,160 @@
+package io.tradeledger.searchfacade.admission;
+
+import com.mongodb.client.MongoCollection;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.OrFilter;
+import io.tradeledger.searchfacade.model.Language;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps statistics on the language collection for estimating how many documents
+ * a query matches: the number of documents, and per attribute the most common
+ * values, the number of distinct values and a histogram of numeric values such
+ * as versions.
+ *
+ * <p>The statistics are gathered from a random sample of the collection on
+ * startup and refreshed periodically. Until then, nothing is known.
+ */
+@Component
+public class CollectionStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectionStatistics.class);
+
+    private final MongoOperations operations;
+    private final int sampleSize;
+    private final int histogramBuckets;
+    // Null until first gathered
+    private volatile Snapshot snapshot;
+
+    public CollectionStatistics(MongoOperations operations,
+                                @Value("${searchfacade.statistics.sample-size}") int sampleSize,
+                                @Value("${searchfacade.statistics.histogram-buckets}") int histogramBuckets) {
+        this.operations = operations;
+        this.sampleSize = sampleSize;
+        this.histogramBuckets = histogramBuckets;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${searchfacade.statistics.refresh-interval-ms}",
+            fixedDelayString = "${searchfacade.statistics.refresh-interval-ms}")
+    public void refresh() {
+        try {
+            MongoCollection<Document> collection = operations.getCollection(operations.getCollectionName(Language.class));
+            MongoPersistentEntity<?> entity = operations.getConverter().getMappingContext()
+                    .getRequiredPersistentEntity(Language.class);
+
+            List<MongoPersistentProperty> properties = new ArrayList<>();
+            entity.doWithProperties((MongoPersistentProperty property) -> {
+                if (!property.isIdProperty()) {
+                    properties.add(property);
+                }
+            });
+
+            long count = collection.count();
+            Map<String, List<Object>> values = new HashMap<>();
+            for (Document document : collection.aggregate(Collections.singletonList(
+                    new Document("$sample", new Document("size", sampleSize))))) {
+                for (MongoPersistentProperty property : properties) {
+                    values.computeIfAbsent(property.getName(), name -> new ArrayList<>())
+                            .add(document.get(property.getFieldName()));
+                }
+            }
+
+            Map<String, AttributeStatistics> attributes = new HashMap<>();
+            for (MongoPersistentProperty property : properties) {
+                attributes.put(property.getName(), AttributeStatistics.of(
+                        values.getOrDefault(property.getName(), Collections.emptyList()), histogramBuckets));
+            }
+
+            snapshot = new Snapshot(count, attributes);
+            log.debug("Gathered statistics on {} documents from a sample of {}",
+                    count, values.values().stream().mapToInt(List::size).max().orElse(0));
+        } catch (RuntimeException ex) {
+            log.warn("Cannot gather collection statistics, keeping the previous ones", ex);
+        }
+    }
+
+    /**
+     * Returns whether statistics have been gathered yet.
+     */
+    public boolean isKnown() {
+        return snapshot != null;
+    }
+
+    /**
+     * Returns the number of documents in the collection, or 0 if not known.
+     */
+    public long getCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.count;
+    }
+
+    /**
+     * Returns the estimated fraction of documents a filter matches.
+     *
+     * @param filter the filter
+     * @return the fraction, or 1 if nothing is known about the attribute
+     */
+    public double getSelectivity(Filter filter) {
+        if (filter instanceof OrFilter) {
+            // Branches are assumed to be independent, like the filters of a search
+            double unmatched = 1;
+            for (LanguageFilter branch : ((OrFilter) filter).getFilters()) {
+                unmatched *= 1 - getSelectivity(branch);
+            }
+            return 1 - unmatched;
+        }
+
+        Snapshot current = snapshot;
+        AttributeStatistics attribute = current == null ? null : current.attributes.get(filter.getAttribute());
+        if (attribute == null) {
+            return 1;
+        }
+
+        Object queryValue = filter.getQueryValue();
+        if (queryValue instanceof Document) {
+            Document range = (Document) queryValue;
+            Object values = range.get("$in");
+            if (values instanceof List) {
+                // The values are distinct, so their fractions add up
+                double selectivity = 0;
+                for (Object value : (List<?>) values) {
+                    selectivity += attribute.equalTo(value);
+                }
+                return Math.min(1, selectivity);
+            }
+            return attribute.between(range.get("$gte"), range.get("$lte"));
+        }
+        return attribute.equalTo(queryValue);
+    }
+
+    private static final class Snapshot {
+
+        final long count;
+        final Map<String, AttributeStatistics> attributes;
+
+        Snapshot(long count, Map<String, AttributeStatistics> attributes) {
+            this.count = count;
+            this.attributes = attributes;
+        }
+
+    }
+
+}
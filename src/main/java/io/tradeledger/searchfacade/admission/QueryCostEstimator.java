@@ -0,0 +1,128 @@
+package io.tradeledger.searchfacade.admission;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.index.IndexManager;
+import io.tradeledger.searchfacade.repository.ContinuationToken;
+import io.tradeledger.searchfacade.repository.QueryPlan;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates the size and cost of a search before it runs, from the
+ * {@link CollectionStatistics} and the indexes.
+ *
+ * <p>Filters are assumed to be independent, so the estimated number of results is
+ * the number of documents times the selectivity of each filter. With a suitable
+ * index, only the documents matching the filters on indexed attributes are read;
+ * without one, the whole collection is. A page sorted by an indexed attribute is read
+ * in index order until it is full, so only about as many documents are read as it
+ * takes to find one more match than the page holds.
+ *
+ * <p>In rate limit tokens, a search costs one token, plus half a token per filter,
+ * plus a token per so many documents read. Until statistics have been gathered,
+ * searches without a suitable index cost twice as much instead.
+ */
+@Component
+public class QueryCostEstimator {
+
+    private static final double BASE_COST = 1;
+    private static final double FILTER_COST = 0.5;
+    private static final double UNINDEXED_FACTOR = 2;
+
+    private final QueryPlanCache queryPlans;
+    private final IndexManager indexManager;
+    private final CollectionStatistics statistics;
+    private final double documentsPerToken;
+
+    public QueryCostEstimator(QueryPlanCache queryPlans, IndexManager indexManager, CollectionStatistics statistics,
+                              @Value("${searchfacade.admission.cost.documents-per-token}") double documentsPerToken) {
+        this.queryPlans = queryPlans;
+        this.indexManager = indexManager;
+        this.statistics = statistics;
+        this.documentsPerToken = documentsPerToken;
+    }
+
+    /**
+     * Estimates how many documents a search returns and reads.
+     *
+     * @param filters the filters of the search
+     * @return the estimate, unknown until statistics have been gathered
+     * @throws InvalidParameterException if the filters are invalid
+     */
+    public QueryEstimate estimate(Filter[] filters) {
+        QueryPlan plan = queryPlans.getPlan(filters);
+        if (!statistics.isKnown()) {
+            return QueryEstimate.unknown();
+        }
+
+        long count = statistics.getCount();
+        boolean indexed = indexManager.isIndexed(plan);
+        double results = count;
+        double scanned = count;
+        for (Filter filter : filters) {
+            double selectivity = statistics.getSelectivity(filter);
+            results *= selectivity;
+            // An or group only narrows the scan if each of its branches can use an index
+            if (indexed && filter.getAttributes().stream().allMatch(indexManager::isIndexed)) {
+                scanned *= selectivity;
+            }
+        }
+
+        return new QueryEstimate(Math.round(results), Math.round(scanned));
+    }
+
+    /**
+     * Estimates how many documents a page of search results returns and reads.
+     *
+     * <p>Sorted by an indexed attribute, a page of n results reads about (n + 1) /
+     * selectivity documents at most, as the search stops once one more match than
+     * the page holds has been found. Otherwise all matches are read and sorted.
+     *
+     * @param filters the filters of the search
+     * @param pageRequest the page
+     * @return the estimate, unknown until statistics have been gathered
+     * @throws InvalidParameterException if the filters are invalid
+     */
+    public QueryEstimate estimate(Filter[] filters, SearchPageRequest pageRequest) {
+        QueryEstimate estimate = estimate(filters);
+        if (!estimate.isKnown()) {
+            return estimate;
+        }
+
+        long limit = pageRequest.getSize() + 1L;
+        long scanned = estimate.getScanned();
+        String sort = pageRequest.getSort();
+        if (estimate.getResults() > 0 && (ContinuationToken.ID.equals(sort) || indexManager.isIndexed(sort))) {
+            double selectivity = (double) estimate.getResults() / statistics.getCount();
+            scanned = Math.min(scanned, (long) Math.ceil(limit / selectivity));
+        }
+
+        return new QueryEstimate(Math.min(estimate.getResults(), limit), scanned);
+    }
+
+    /**
+     * Returns the cost of a search in rate limit tokens.
+     *
+     * @param filters the filters of the search
+     * @return the cost, at least 1
+     */
+    public double getCost(Filter[] filters) {
+        QueryEstimate estimate;
+        try {
+            estimate = estimate(filters);
+        } catch (InvalidParameterException ex) {
+            // Rejected before it runs
+            return BASE_COST;
+        }
+
+        double cost = BASE_COST + FILTER_COST * filters.length;
+        if (estimate.isKnown()) {
+            return cost + estimate.getScanned() / documentsPerToken;
+        }
+        return indexManager.isIndexed(queryPlans.getPlan(filters)) ? cost : cost * UNINDEXED_FACTOR;
+    }
+
+}
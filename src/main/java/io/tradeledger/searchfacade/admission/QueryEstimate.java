@@ -0,0 +1,53 @@
+package io.tradeledger.searchfacade.admission;
+
+/**
+ * The estimated outcome of a search before it runs: how many documents it
+ * returns, and how many MongoDB reads to find them.
+ */
+public final class QueryEstimate {
+
+    private static final QueryEstimate UNKNOWN = new QueryEstimate(-1, -1);
+
+    private final long results;
+    private final long scanned;
+
+    public QueryEstimate(long results, long scanned) {
+        this.results = results;
+        this.scanned = scanned;
+    }
+
+    /**
+     * Returns an estimate for when no statistics are available.
+     */
+    public static QueryEstimate unknown() {
+        return UNKNOWN;
+    }
+
+    public boolean isKnown() {
+        return results >= 0;
+    }
+
+    /**
+     * Returns the estimated number of matching documents, or -1 if unknown.
+     */
+    public long getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the estimated number of documents read to find the matches,
+     * i.e. the whole collection without a suitable index, or -1 if unknown.
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryEstimate{" +
+                "results=" + results +
+                ", scanned=" + scanned +
+                '}';
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.tradeledger.searchfacade.admission;
+
+import io.tradeledger.searchfacade.exception.QueryTooExpensiveException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.index.IndexManager;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refuses searches that are estimated to be too expensive, before they run.
+ *
+ * <p>Any search estimated to read more documents than the scan budget is rejected.
+ * Pages are held to it by the documents read for the page alone, which is far fewer
+ * than for all matches when the page is sorted by an indexed attribute, whereas
+ * counts, groups and streams read every match. Streams are also held to a result
+ * budget: beyond it they are either rejected or, if so configured, answered with
+ * the first page only, which is then held to the scan budget of a page.
+ *
+ * <p>In strict mode, filters on attributes without an index are refused outright.
+ * Until collection statistics have been gathered, only strict mode applies.
+ */
+@Component
+public class QueryGuard {
+
+    private final QueryCostEstimator costEstimator;
+    private final IndexManager indexManager;
+    private final boolean strictIndexes;
+    private final long maxScanned;
+    private final long maxResults;
+    private final boolean paginateOverBudget;
+
+    public QueryGuard(QueryCostEstimator costEstimator, IndexManager indexManager,
+                      @Value("${searchfacade.guard.strict-indexes}") boolean strictIndexes,
+                      @Value("${searchfacade.guard.max-scanned}") long maxScanned,
+                      @Value("${searchfacade.guard.max-results}") long maxResults,
+                      @Value("${searchfacade.guard.paginate-over-budget}") boolean paginateOverBudget) {
+        this.costEstimator = costEstimator;
+        this.indexManager = indexManager;
+        this.strictIndexes = strictIndexes;
+        this.maxScanned = maxScanned;
+        this.maxResults = maxResults;
+        this.paginateOverBudget = paginateOverBudget;
+    }
+
+    /**
+     * Checks a search that reads all its matches, e.g. a count or a group.
+     *
+     * @param filters the filters of the search
+     * @throws QueryTooExpensiveException if the search is over the scan budget, or
+     * filters on an unindexed attribute in strict mode
+     */
+    public void check(Filter[] filters) {
+        checkIndexes(filters);
+        checkScanned(costEstimator.estimate(filters));
+    }
+
+    /**
+     * Checks a search for a page of results.
+     *
+     * @param filters the filters of the search
+     * @param pageRequest the page
+     * @throws QueryTooExpensiveException if the page is over the scan budget, or
+     * filters on an unindexed attribute in strict mode
+     */
+    public void check(Filter[] filters, SearchPageRequest pageRequest) {
+        checkIndexes(filters);
+        checkScanned(costEstimator.estimate(filters, pageRequest));
+    }
+
+    /**
+     * Checks a search that returns all its results.
+     *
+     * @param filters the filters of the search
+     * @param firstPage the page to return instead if the search is over the result budget
+     * @return true if only the first page should be returned, as the search is over the result budget
+     * @throws QueryTooExpensiveException if the search, or its first page if returned instead, is over
+     * the scan budget, filters on an unindexed attribute in strict mode, or is over the result budget
+     * and may not be paginated
+     */
+    public boolean mustPaginate(Filter[] filters, SearchPageRequest firstPage) {
+        checkIndexes(filters);
+        QueryEstimate estimate = costEstimator.estimate(filters);
+        if (maxResults <= 0 || estimate.getResults() <= maxResults) {
+            checkScanned(estimate);
+            return false;
+        }
+
+        if (!paginateOverBudget) {
+            throw new QueryTooExpensiveException("about " + estimate.getResults() +
+                    " results, at most " + maxResults + " can be streamed; narrow the filters or page through them");
+        }
+        checkScanned(costEstimator.estimate(filters, firstPage));
+        return true;
+    }
+
+    private void checkIndexes(Filter[] filters) {
+        if (strictIndexes) {
+            for (Filter filter : filters) {
+                for (String attribute : filter.getAttributes()) {
+                    if (!indexManager.isIndexed(attribute)) {
+                        throw new QueryTooExpensiveException("attribute " + attribute + " is not indexed");
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkScanned(QueryEstimate estimate) {
+        if (maxScanned > 0 && estimate.getScanned() > maxScanned) {
+            throw new QueryTooExpensiveException("about " + estimate.getScanned() +
+                    " documents would be read, at most " + maxScanned + " are allowed");
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package io.tradeledger.searchfacade.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.tradeledger.searchfacade.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests per client with a token bucket each, weighted by
+ * the estimated cost of the requests.
+ *
+ * <p>Buckets of idle clients are dropped once they would have been refilled
+ * completely, and the number of buckets is bounded, so that clients cannot exhaust
+ * memory by sending many different keys.
+ */
+@Component
+public class RateLimiter {
+
+    private final double tokensPerSecond;
+    private final double burst;
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimiter(@Value("${searchfacade.admission.rate.tokens-per-second}") double tokensPerSecond,
+                       @Value("${searchfacade.admission.rate.burst}") double burst,
+                       @Value("${searchfacade.admission.rate.max-clients}") long maxClients) {
+        this.tokensPerSecond = tokensPerSecond;
+        this.burst = burst;
+        long refillNanos = tokensPerSecond > 0 ? (long) (burst / tokensPerSecond * 1e9) : 0;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Math.max(refillNanos, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /**
+     * Admits a request or rejects it.
+     *
+     * @param client the client, e.g. its API key
+     * @param cost the estimated cost of the request, in tokens
+     * @throws TooManyRequestsException if the client has not got enough tokens left
+     */
+    public void acquire(String client, double cost) {
+        if (tokensPerSecond <= 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long waitNanos = buckets.get(client, key -> new TokenBucket(burst, tokensPerSecond, now))
+                .tryTake(cost, now);
+        if (waitNanos > 0) {
+            throw new TooManyRequestsException("rate limit exceeded",
+                    Math.max(1, (long) Math.ceil(waitNanos / 1e9)));
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package io.tradeledger.searchfacade.admission;
+
+/**
+ * A token bucket that holds up to a burst of tokens and is refilled at a constant rate.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double capacity, double tokensPerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes tokens if there are enough. Costs above the capacity are capped at it,
+     * so that expensive requests are still admitted from a full bucket.
+     *
+     * @param cost the number of tokens to take
+     * @param now the current time, as of {@link System#nanoTime()}
+     * @return 0 if the tokens were taken, or else the nanoseconds until there will be enough
+     */
+    synchronized long tryTake(double cost, long now) {
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+
+        double needed = Math.min(cost, capacity);
+        if (tokens >= needed) {
+            tokens -= needed;
+            return 0;
+        }
+        return (long) Math.ceil((needed - tokens) / tokensPerNano);
+    }
+
+}
@@ -2,10 +2,15 @@ package io.tradeledger.searchfacade.advice;
 
 import io.tradeledger.searchfacade.exception.InvalidParameterException;
 import io.tradeledger.searchfacade.exception.LanguageNotFoundException;
+import io.tradeledger.searchfacade.exception.QueryTooExpensiveException;
+import io.tradeledger.searchfacade.exception.TooManyRequestsException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @RestControllerAdvice
 public class LanguageControllerAdvice {
@@ -22,4 +27,28 @@ public class LanguageControllerAdvice {
         return ex.getMessage();
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String argumentTypeMismatchHandler(MethodArgumentTypeMismatchException ex) {
+        // Thrown when binding request parameters, e.g. when the filter converter rejects the filters
+        Throwable cause = ex.getMostSpecificCause();
+        if (cause instanceof InvalidParameterException) {
+            return cause.getMessage();
+        }
+        return new InvalidParameterException(ex.getName()).getMessage();
+    }
+
+    @ExceptionHandler(QueryTooExpensiveException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String queryTooExpensiveHandler(QueryTooExpensiveException ex) {
+        return ex.getMessage();
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    ResponseEntity<String> tooManyRequestsHandler(TooManyRequestsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
 }
@@ -0,0 +1,60 @@
+package io.tradeledger.searchfacade.cache;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.SearchPage;
+
+/**
+ * Estimates the heap footprint in bytes of cached keys and results, so that
+ * the caches can be bounded by size rather than by number of entries.
+ *
+ * <p>The estimates assume a 64-bit JVM with compressed references and are meant
+ * for sizing only, not as exact measurements.
+ */
+public class CacheWeigher implements Weigher<Object, Object> {
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int LANGUAGE_OVERHEAD = 64;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        return ENTRY_OVERHEAD + weighString(key.toString()) + weighValue(value);
+    }
+
+    private static int weighValue(Object value) {
+        if (value instanceof Language) {
+            return weighLanguage((Language) value);
+        } else if (value instanceof SearchPage) {
+            SearchPage<?> page = (SearchPage<?>) value;
+            int weight = OBJECT_OVERHEAD + weighString(page.getNextPageToken().orElse(""));
+
+            for (Object content : page.getContent()) {
+                weight += weighValue(content);
+            }
+
+            return weight;
+        } else if (value instanceof SerializedResponse) {
+            SerializedResponse response = (SerializedResponse) value;
+            return OBJECT_OVERHEAD + (int) response.getContentLength();
+        } else if (value instanceof SerializedPage) {
+            SerializedPage page = (SerializedPage) value;
+            return OBJECT_OVERHEAD + weighString(page.getNextPageToken()) + weighValue(page.getBody());
+        } else if (value instanceof LanguageResponseCache.Validator) {
+            return OBJECT_OVERHEAD + weighString(((LanguageResponseCache.Validator) value).eTag);
+        }
+
+        return OBJECT_OVERHEAD;
+    }
+
+    private static int weighLanguage(Language language) {
+        return LANGUAGE_OVERHEAD
+                + weighString(language.getId())
+                + weighString(language.getLanguage());
+    }
+
+    private static int weighString(String string) {
+        return string == null ? 0 : 40 + 2 * string.length();
+    }
+
+}
@@ -0,0 +1,53 @@
+package io.tradeledger.searchfacade.cache;
+
+import io.tradeledger.searchfacade.model.Language;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates cached languages and search results whenever a language is written.
+ *
+ * <p>Any write may change the result of any search, so all search results and
+ * their encoded responses are dropped. Cached lookups by ID are dropped as well: they
+ * are keyed by collection version, so none of them would be found again once the
+ * version has moved on.
+ *
+ * <p>Caches are invalidated before the collection version moves on, so that no
+ * cached response from before a write is taken to be current after it.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LanguageCacheInvalidator extends AbstractMongoEventListener<Language> {
+
+    private final CacheManager cacheManager;
+
+    public LanguageCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Language> event) {
+        evictAll();
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Language> event) {
+        evictAll();
+    }
+
+    /**
+     * Drops all cached languages and search results, e.g. after a bulk write, which
+     * raises no mapping events.
+     */
+    public void evictAll() {
+        cacheManager.getCache(LanguageCaches.LANGUAGES).clear();
+        cacheManager.getCache(LanguageCaches.SEARCHES).clear();
+        cacheManager.getCache(LanguageCaches.SEARCH_RESPONSES).clear();
+    }
+
+}
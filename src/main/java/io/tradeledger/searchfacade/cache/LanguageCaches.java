@@ -0,0 +1,26 @@
+package io.tradeledger.searchfacade.cache;
+
+/**
+ * Names of the caches holding language query results.
+ */
+public final class LanguageCaches {
+
+    /** Languages by ID */
+    public static final String LANGUAGES = "languages";
+
+    /** Pages of search results by canonical filter set and page request */
+    public static final String SEARCHES = "languageSearches";
+
+    /** Languages encoded as JSON by ID and field values */
+    public static final String FRAGMENTS = "languageFragments";
+
+    /** Pages of search results encoded as JSON by canonical filter set and page request */
+    public static final String SEARCH_RESPONSES = "languageSearchResponses";
+
+    /** Entity tags last sent by request, with the collection version they were sent at */
+    public static final String VALIDATORS = "languageValidators";
+
+    private LanguageCaches() {
+    }
+
+}
@@ -0,0 +1,207 @@
+package io.tradeledger.searchfacade.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.CollectionVersion;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Caches responses as UTF-8 encoded JSON, so that hot results are written out
+ * without going through Jackson again.
+ *
+ * <p>Each language is cached as a fragment keyed by its ID and the values of its
+ * fields, and by whether it was projected, as fields left out of a projection are
+ * omitted rather than written as null. A changed document, or a different
+ * projection of it, therefore has a different key, and fragments never need to be
+ * invalidated; stale ones simply stop being used and are evicted. Pages of search results are assembled from the
+ * fragments of their languages and cached by canonical filter set, page request and
+ * collection version, alongside the search results themselves, and are invalidated
+ * with them.
+ *
+ * <p>Entity tags are derived from the cache keys: a fragment's is a digest of its
+ * key, and a page's combines those of its fragments. An unchanged result therefore
+ * always has the same tag, and clients can revalidate it with a conditional request.
+ * The tag last sent for each request is kept with the collection version it was
+ * sent at, so that while the collection is unchanged, revalidation needs no query.
+ */
+@Component
+public class LanguageResponseCache {
+
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_SEPARATOR = {','};
+    private static final byte[] ARRAY_END = {']'};
+    // An odd multiplier, so that combining fingerprints loses no information
+    private static final long FINGERPRINT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final Cache fragments;
+    private final Cache searchResponses;
+    private final Cache validators;
+    private final ObjectWriter languageWriter;
+    private final ObjectWriter projectedWriter;
+
+    public LanguageResponseCache(CacheManager cacheManager, ObjectMapper objectMapper) {
+        this.fragments = cacheManager.getCache(LanguageCaches.FRAGMENTS);
+        this.searchResponses = cacheManager.getCache(LanguageCaches.SEARCH_RESPONSES);
+        this.validators = cacheManager.getCache(LanguageCaches.VALIDATORS);
+        this.languageWriter = objectMapper.writerFor(Language.class);
+        this.projectedWriter = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerFor(Language.class);
+    }
+
+    /**
+     * Returns a language as a response body.
+     *
+     * @param language the language
+     * @return the encoded language
+     */
+    public SerializedResponse getLanguage(Language language) {
+        return getLanguage(language, false);
+    }
+
+    /**
+     * @param projected whether fields left out of a projection, set to null, are to be omitted
+     */
+    private SerializedResponse getLanguage(Language language, boolean projected) {
+        List<Object> key = Arrays.asList(projected,
+                language.getId(), language.getLanguage(), language.getVersion(), language.getJvmBased());
+        ObjectWriter writer = projected ? projectedWriter : languageWriter;
+        return fragments.get(key, () -> new SerializedResponse(
+                Collections.singletonList(serialize(writer, language)), digest(key.toString())));
+    }
+
+    /**
+     * Returns a cached page of search results, or searches and caches it. Concurrent
+     * requests for a page that is not cached wait for a single search.
+     *
+     * <p>Pages are cached by the collection version read before the search, so that a
+     * page searched before a write, but cached after the write has cleared the cache,
+     * is never returned at the version that follows the write.
+     *
+     * @param key the canonical key of the search, see {@link SearchKeyGenerator#canonicalKey}
+     * @param version the version of the collection read before the search
+     * @param search runs the search and encodes the page, e.g. with {@link #serialize(SearchPage)}
+     * @return the encoded page
+     */
+    public SerializedPage getPage(Object key, CollectionVersion version, Supplier<SerializedPage> search) {
+        try {
+            return searchResponses.get(Arrays.asList(key, version.getNumber()), search::get);
+        } catch (Cache.ValueRetrievalException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Encodes a page of search results with all fields from the fragments of its languages.
+     *
+     * @param page the page
+     * @return the encoded page, whose entity tag covers the next page token as well
+     */
+    public SerializedPage serialize(SearchPage<Language> page) {
+        return serialize(page, Projection.all());
+    }
+
+    /**
+     * Encodes a page of search results from the fragments of its languages.
+     *
+     * @param page the page
+     * @param projection the fields fetched; others are omitted unless all were fetched
+     * @return the encoded page, whose entity tag covers the next page token as well
+     */
+    public SerializedPage serialize(SearchPage<Language> page, Projection projection) {
+        String nextPageToken = page.getNextPageToken().orElse(null);
+        List<Language> languages = page.getContent();
+        List<byte[]> parts = new ArrayList<>(languages.size() * 2 + 1);
+        // Seeded, so that a page of one language is not tagged like the language itself
+        long fingerprint = digest(String.valueOf(nextPageToken));
+
+        parts.add(ARRAY_START);
+        for (int i = 0; i < languages.size(); i++) {
+            SerializedResponse fragment = getLanguage(languages.get(i), !projection.isAll());
+            if (i > 0) {
+                parts.add(ARRAY_SEPARATOR);
+            }
+            parts.add(fragment.getParts().get(0));
+            // Order matters, as the same languages in another order are another response
+            fingerprint = fingerprint * FINGERPRINT_MULTIPLIER + fragment.getFingerprint();
+        }
+        parts.add(ARRAY_END);
+
+        return new SerializedPage(new SerializedResponse(parts, fingerprint), nextPageToken);
+    }
+
+    /**
+     * Returns the entity tag last sent in response to a request, if the collection
+     * has not changed since.
+     *
+     * @param key the request, e.g. the language ID or the canonical key of the search
+     * @param version the current version of the collection
+     * @return the entity tag, or null if unknown or possibly stale
+     */
+    public String getETag(Object key, CollectionVersion version) {
+        Validator validator = validators.get(key, Validator.class);
+        return validator == null || version.changedSince(validator.version) ? null : validator.eTag;
+    }
+
+    /**
+     * Records the entity tag sent in response to a request.
+     *
+     * @param key the request
+     * @param version the version of the collection read before the response was produced
+     * @param response the response
+     */
+    public void putETag(Object key, CollectionVersion version, SerializedResponse response) {
+        validators.put(key, new Validator(version.getNumber(), response.getETag()));
+    }
+
+    private static byte[] serialize(ObjectWriter writer, Language language) {
+        try {
+            return writer.writeValueAsBytes(language);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the first 64 bits of the MD5 digest of a key.
+     */
+    private static long digest(String key) {
+        return ByteBuffer.wrap(DigestUtils.md5Digest(key.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    /**
+     * An entity tag and the number of the collection version it was sent at.
+     */
+    static final class Validator {
+
+        final long version;
+        final String eTag;
+
+        private Validator(long version, String eTag) {
+            this.version = version;
+            this.eTag = eTag;
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.tradeledger.searchfacade.cache;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Generates cache keys for search methods taking a filter set as their first parameter.
+ *
+ * <p>The filters are put in canonical order, so that the same filters passed in a
+ * different order map to the same key.
+ *
+ * <p>Generated keys also hold the current version of the collection, read before the
+ * search runs, so that results searched before a write but cached after the write has
+ * cleared the cache are not found again once the version has moved on.
+ */
+@Component
+public class SearchKeyGenerator implements KeyGenerator {
+
+    private final LanguageChangeTracker changeTracker;
+
+    public SearchKeyGenerator(LanguageChangeTracker changeTracker) {
+        this.changeTracker = changeTracker;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Object[] key = Arrays.copyOf(params, params.length + 1);
+        key[0] = canonicalFilters((Filter[]) params[0]);
+        key[params.length] = changeTracker.getVersion().getNumber();
+        return new SimpleKey(key);
+    }
+
+    /**
+     * Returns a key for the given filter set and further parameters, e.g. the page request.
+     *
+     * @param filters the filters
+     * @param params any further parameters the result depends on
+     * @return the canonical key
+     */
+    public static Object canonicalKey(Filter[] filters, Object... params) {
+        Object[] key = new Object[params.length + 1];
+        key[0] = canonicalFilters(filters);
+        System.arraycopy(params, 0, key, 1, params.length);
+        return new SimpleKey(key);
+    }
+
+    private static Object canonicalFilters(Filter[] filters) {
+        Filter[] sorted = filters.clone();
+        Arrays.sort(sorted, Comparator.comparing(Filter::getShape));
+        return Arrays.asList(sorted);
+    }
+
+}
@@ -0,0 +1,35 @@
+package io.tradeledger.searchfacade.cache;
+
+/**
+ * A page of search results, ready to be written out.
+ */
+public final class SerializedPage {
+
+    private final SerializedResponse body;
+    private final String nextPageToken;
+
+    public SerializedPage(SerializedResponse body, String nextPageToken) {
+        this.body = body;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public SerializedResponse getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the token of the next page, or null if this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    @Override
+    public String toString() {
+        return "SerializedPage{" +
+                "body=" + body +
+                ", nextPageToken='" + nextPageToken + '\'' +
+                '}';
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.tradeledger.searchfacade.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A response body that is already encoded, as one or more byte arrays written
+ * out one after the other, together with its strong entity tag.
+ *
+ * <p>The byte arrays may be shared with a cache and must not be modified.
+ */
+public final class SerializedResponse {
+
+    private final List<byte[]> parts;
+    private final long fingerprint;
+    private final long contentLength;
+
+    /**
+     * Creates a response body.
+     *
+     * @param parts the encoded parts, in order
+     * @param fingerprint a hash of whatever determines the content, from which the entity tag is derived
+     */
+    public SerializedResponse(List<byte[]> parts, long fingerprint) {
+        this.parts = parts;
+        this.fingerprint = fingerprint;
+
+        long length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        this.contentLength = length;
+    }
+
+    /**
+     * Returns the entity tag, without quotes.
+     */
+    public String getETag() {
+        return Long.toHexString(fingerprint);
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    List<byte[]> getParts() {
+        return parts;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (byte[] part : parts) {
+            outputStream.write(part);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SerializedResponse{" +
+                "parts=" + parts.size() +
+                ", eTag='" + getETag() + '\'' +
+                ", contentLength=" + contentLength +
+                '}';
+    }
+
+}
@@ -0,0 +1,73 @@
+package io.tradeledger.searchfacade.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single call.
+ *
+ * <p>The first caller for a key runs the call; callers arriving with the same key
+ * while it is in flight wait for it and receive the same result, or the same
+ * exception. Nothing is kept once the call completes, so unlike a cache this never
+ * returns results older than the request.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the call for the given key, or waits for the one already in flight.
+     *
+     * @param key identifies calls with the same result
+     * @param call computes the result
+     * @return the result, shared by all callers waiting on the same call
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    /**
+     * Returns the number of calls currently in flight.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            // Rethrow the caller's exception as is, so that it is handled as if thrown here
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package io.tradeledger.searchfacade.cache;
+
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Generates cache keys from the method parameters and the current version of the
+ * collection, read before the method runs.
+ *
+ * <p>Entries cached before the version moves on are not found again after it, even
+ * when the collection was changed by another application and seen only through
+ * the read replica, which raises no events to evict them by.
+ */
+@Component
+public class VersionKeyGenerator implements KeyGenerator {
+
+    private final LanguageChangeTracker changeTracker;
+
+    public VersionKeyGenerator(LanguageChangeTracker changeTracker) {
+        this.changeTracker = changeTracker;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Object[] key = Arrays.copyOf(params, params.length + 1);
+        key[params.length] = changeTracker.getVersion().getNumber();
+        return new SimpleKey(key);
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.tradeledger.searchfacade.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.tradeledger.searchfacade.cache.CacheWeigher;
+import io.tradeledger.searchfacade.cache.LanguageCaches;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets up the in-process result caches.
+ *
+ * <p>The caches are bounded by their estimated size in bytes and evict by
+ * Caffeine's W-TinyLFU policy. Hit, miss and eviction counts are recorded and
+ * published as {@code cache.*} metrics through the Actuator.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(@Value("${searchfacade.cache.languages.max-bytes}") long languagesMaxBytes,
+                                     @Value("${searchfacade.cache.searches.max-bytes}") long searchesMaxBytes,
+                                     @Value("${searchfacade.cache.fragments.max-bytes}") long fragmentsMaxBytes,
+                                     @Value("${searchfacade.cache.search-responses.max-bytes}") long searchResponsesMaxBytes,
+                                     @Value("${searchfacade.cache.validators.max-bytes}") long validatorsMaxBytes,
+                                     @Value("${searchfacade.cache.ttl-seconds}") long ttlSeconds) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(Arrays.asList(
+                createCache(LanguageCaches.LANGUAGES, languagesMaxBytes, ttlSeconds),
+                createCache(LanguageCaches.SEARCHES, searchesMaxBytes, ttlSeconds),
+                createCache(LanguageCaches.FRAGMENTS, fragmentsMaxBytes, ttlSeconds),
+                createCache(LanguageCaches.SEARCH_RESPONSES, searchResponsesMaxBytes, ttlSeconds),
+                createCache(LanguageCaches.VALIDATORS, validatorsMaxBytes, ttlSeconds)));
+        return cacheManager;
+    }
+
+    private static CaffeineCache createCache(String name, long maxBytes, long ttlSeconds) {
+        return new CaffeineCache(name, Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new CacheWeigher())
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build());
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.tradeledger.searchfacade.config;
+
+import io.tradeledger.searchfacade.admission.AdmissionInterceptor;
+import io.tradeledger.searchfacade.admission.QueryCostEstimator;
+import io.tradeledger.searchfacade.admission.RateLimiter;
+import io.tradeledger.searchfacade.controller.SerializedResponseConverter;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilterConverter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final RateLimiter rateLimiter;
+    private final QueryCostEstimator costEstimator;
+    private final LanguageSchema schema;
+    private final SearchMetrics metrics;
+
+    public WebConfig(RateLimiter rateLimiter, QueryCostEstimator costEstimator,
+                     LanguageSchema schema, SearchMetrics metrics) {
+        this.rateLimiter = rateLimiter;
+        this.costEstimator = costEstimator;
+        this.schema = schema;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        LanguageFilterConverter filterConverter = new LanguageFilterConverter(schema, metrics);
+        registry.addConverter(filterConverter);
+        // A parameter given several times is bound from all its values at once
+        registry.addConverter(String[].class, Filter[].class, filterConverter::convertAll);
+        // When a conversion to an array fails, the binder retries it element by element;
+        // converting to a single filter as well makes the retry report the original error
+        registry.addConverter(String.class, Filter.class, filterConverter::convertOne);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new SerializedResponseConverter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AdmissionInterceptor(rateLimiter, costEstimator, schema))
+                .addPathPatterns("/languages/**", "/reactive/languages/**");
+    }
+
+}
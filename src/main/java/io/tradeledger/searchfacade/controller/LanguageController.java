@@ -1,27 +1,98 @@
 package io.tradeledger.searchfacade.controller;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.tradeledger.searchfacade.admission.QueryGuard;
+import io.tradeledger.searchfacade.cache.LanguageResponseCache;
+import io.tradeledger.searchfacade.cache.SearchKeyGenerator;
+import io.tradeledger.searchfacade.cache.SerializedPage;
+import io.tradeledger.searchfacade.cache.SerializedResponse;
+import io.tradeledger.searchfacade.cache.SingleFlight;
 import io.tradeledger.searchfacade.exception.InvalidParameterException;
 import io.tradeledger.searchfacade.exception.LanguageNotFoundException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
 import io.tradeledger.searchfacade.model.Language;
-import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.model.LanguageBatch;
+import io.tradeledger.searchfacade.model.LanguageGroup;
+import io.tradeledger.searchfacade.repository.CollectionVersion;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
 import io.tradeledger.searchfacade.repository.LanguageRepository;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 public class LanguageController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+    public static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+    public static final String TOTAL_COUNT = "X-Total-Count";
+
     private final LanguageRepository repository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter languageWriter;
+    private final ObjectWriter projectedWriter;
+    private final LanguageResponseCache responseCache;
+    private final LanguageChangeTracker changeTracker;
+    private final SearchMetrics metrics;
+    private final QueryGuard guard;
+    private final LanguageSchema schema;
+    private final int maxPageSize;
+    private final int maxLookupSize;
+    private final SingleFlight<Object, SerializedPage> searches = new SingleFlight<>();
 
-    public LanguageController(LanguageRepository repository) {
+    public LanguageController(LanguageRepository repository, ObjectMapper objectMapper,
+                              LanguageResponseCache responseCache, LanguageChangeTracker changeTracker,
+                              SearchMetrics metrics, QueryGuard guard, LanguageSchema schema,
+                              @Value("${searchfacade.search.max-page-size}") int maxPageSize,
+                              @Value("${searchfacade.lookup.max-size}") int maxLookupSize) {
         this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.changeTracker = changeTracker;
+        this.metrics = metrics;
+        this.guard = guard;
+        this.schema = schema;
+        this.maxPageSize = maxPageSize;
+        this.maxLookupSize = maxLookupSize;
+        // Leave flushing to the output buffers rather than hitting the socket once per document
+        this.languageWriter = objectMapper.writerFor(Language.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // Fields left out of a projection are null, and are omitted rather than written
+        this.projectedWriter = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerFor(Language.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @GetMapping("/")
@@ -29,29 +100,258 @@ public class LanguageController {
         return "Hello World! Welcome to the Search Facade REST API.";
     }
 
+    /**
+     * Returns a language as cached JSON, with an entity tag and last modified date
+     * so that clients can revalidate it and get a 304 response while it is unchanged.
+     * While nothing has been written to the collection since the tag was sent, the
+     * 304 response is sent without looking the language up. Otherwise the language is
+     * looked up first, so that an unknown ID is answered with a 404 whatever the
+     * request's preconditions.
+     */
     @GetMapping("/languages/{id}")
-    public Language getLanguage(@PathVariable String id) {
-        return repository.findById(id)
+    public ResponseEntity<SerializedResponse> getLanguage(@PathVariable String id, WebRequest request) {
+        CollectionVersion version = changeTracker.getVersion();
+        // Known only for languages that were found at this version
+        String knownETag = responseCache.getETag(id, version);
+        if (knownETag != null && isNotModified(request, knownETag, version)) {
+            return notModified(knownETag, version);
+        }
+
+        Language language = repository.findById(id)
                 .orElseThrow(() -> new LanguageNotFoundException(id));
+        SerializedResponse body = responseCache.getLanguage(language);
+        // A language looked up across a write may be stale, so it is not revalidated at the earlier version
+        if (!changeTracker.changedSince(version.getNumber())) {
+            responseCache.putETag(id, version, body);
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(body.getETag())
+                .lastModified(version.getModifiedAt())
+                .body(body);
+    }
+
+    /**
+     * Looks up many languages by ID in one request, and with a single query unless
+     * there are very many IDs. Languages are returned in request order; IDs that
+     * are not found are reported as missing rather than failing the request.
+     */
+    @PostMapping("/languages/batch")
+    public LanguageBatch getLanguages(@RequestBody List<String> ids) {
+        if (ids.size() > maxLookupSize) {
+            throw new InvalidParameterException("Too many IDs: " + ids.size());
+        }
+
+        Map<String, Language> found = repository.findAllByIds(new LinkedHashSet<>(ids));
+        List<Language> languages = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>();
+
+        for (String id : ids) {
+            Language language = found.get(id);
+            if (language != null) {
+                languages.add(language);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        return new LanguageBatch(languages, missing);
     }
 
+    /**
+     * Returns a single page of search results. If there are more results, the
+     * token for the next page is returned in the {@value #NEXT_PAGE_TOKEN} header.
+     *
+     * <p>Page sizes above the configured maximum are capped at the maximum. If
+     * fields are given, only those fields are fetched and returned.
+     *
+     * <p>Identical searches arriving while one is running, i.e. with the same filters
+     * in any order and the same page request, wait for it and share its response body
+     * rather than each querying the database.
+     *
+     * <p>Responses are cached as encoded JSON and carry an entity tag and last
+     * modified date, so that unchanged pages can be revalidated with a 304 response,
+     * without searching while nothing has been written to the collection.
+     */
     @GetMapping("/languages/search")
-    public List<Language> searchLanguages(@RequestParam(value="filter") String filters) {
+    public ResponseEntity<SerializedResponse> searchLanguages(@RequestParam(value="filter") Filter[] filters,
+                                                          @RequestParam(value="sort", required=false) String sort,
+                                                          @RequestParam(value="size", required=false) Integer size,
+                                                          @RequestParam(value="pageToken", required=false) String pageToken,
+                                                          @RequestParam(value="fields", required=false) String[] fields,
+                                                          WebRequest request) {
+        SearchPageRequest pageRequest = SearchPageRequest.of(schema, sort, pageToken, size, maxPageSize)
+                .withProjection(Projection.of(schema, fields));
+        Object key = SearchKeyGenerator.canonicalKey(filters, pageRequest);
+
+        CollectionVersion version = changeTracker.getVersion();
+        String knownETag = responseCache.getETag(key, version);
+        if (isNotModified(request, knownETag, version)) {
+            return notModified(knownETag, version);
+        }
+
+        guard.check(filters, pageRequest);
+        SerializedPage page = responseCache.getPage(key, version, () -> searches.execute(key,
+                () -> serialize(filters, pageRequest, repository.search(filters, pageRequest))));
+        // A page searched across a write may be stale, so it is not revalidated at the earlier version
+        if (!changeTracker.changedSince(version.getNumber())) {
+            responseCache.putETag(key, version, page.getBody());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(page.getBody().getETag())
+                .lastModified(version.getModifiedAt());
+        if (page.getNextPageToken() != null) {
+            response.header(NEXT_PAGE_TOKEN, page.getNextPageToken());
+        }
+        return response.body(page.getBody());
+    }
+
+    /**
+     * Counts the search results without fetching them, and returns the count in the
+     * {@value #TOTAL_COUNT} header.
+     */
+    @RequestMapping(value = "/languages/search", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> countLanguages(@RequestParam(value="filter") Filter[] filters) {
+        guard.check(filters);
+        long count = repository.count(filters);
+
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT, String.valueOf(count))
+                .build();
+    }
+
+    /**
+     * Counts the languages matching the filters, if any, without fetching them.
+     */
+    @GetMapping("/languages/count")
+    public Map<String, Long> getCount(@RequestParam(value="filter", required=false) Filter[] filters) {
+        Filter[] matching = orNone(filters);
+        guard.check(matching);
+        return Collections.singletonMap("count", repository.count(matching));
+    }
+
+    /**
+     * Counts the languages matching the filters, if any, per value of an attribute,
+     * optionally with the minimum and maximum of another attribute per value.
+     */
+    @GetMapping("/languages/group")
+    public List<LanguageGroup> getGroups(@RequestParam(value="filter", required=false) Filter[] filters,
+                                         @RequestParam(value="by") String by,
+                                         @RequestParam(value="field", required=false) String field) {
+        Filter[] matching = orNone(filters);
+        guard.check(matching);
+        return repository.group(matching, by, field);
+    }
+
+    /**
+     * Streams the search results as newline-delimited JSON, one language per line.
+     *
+     * <p>Documents are read from a database cursor and written out as they arrive,
+     * so memory use does not depend on the number of matching documents.
+     *
+     * <p>Searches estimated to match more documents than may be streamed are either
+     * rejected or answered with the first page, with the token for the next page in
+     * the {@value #NEXT_PAGE_TOKEN} header. Given a page token, a single page is returned.
+     */
+    @GetMapping(value = "/languages/search", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLanguages(@RequestParam(value="filter") Filter[] filters,
+                                                                 @RequestParam(value="fields", required=false) String[] fields,
+                                                                 @RequestParam(value="pageToken", required=false) String pageToken) {
+        Projection projection = Projection.of(schema, fields);
+        SearchPageRequest pageRequest = SearchPageRequest.of(schema, null, pageToken, maxPageSize)
+                .withProjection(projection);
+        Stream<Language> languages;
+        String nextPageToken = null;
+
+        if (pageToken != null) {
+            guard.check(filters, pageRequest);
+        }
+        if (pageToken != null || guard.mustPaginate(filters, pageRequest)) {
+            SearchPage<Language> page = repository.search(filters, pageRequest);
+            languages = page.getContent().stream();
+            nextPageToken = page.getNextPageToken().orElse(null);
+        } else {
+            // Open the cursor up front so that invalid filters are still reported as a bad request
+            languages = repository.stream(filters, projection);
+        }
+
+        ObjectWriter writer = projection.isAll() ? languageWriter : projectedWriter;
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<Language> stream = languages;
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                Iterator<Language> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON);
+        if (nextPageToken != null) {
+            response.header(NEXT_PAGE_TOKEN, nextPageToken);
+        }
+        return response.body(body);
+    }
+
+    private SerializedPage serialize(Filter[] filters, SearchPageRequest pageRequest, SearchPage<Language> page) {
+        long startedAt = metrics.start();
+        SerializedPage serialized = responseCache.serialize(page, pageRequest.getProjection());
+        metrics.stop(SearchMetrics.SERIALIZE, filters, startedAt);
+        return serialized;
+    }
+
+    private static Filter[] orNone(Filter[] filters) {
+        return filters == null ? new Filter[0] : filters;
+    }
+
+    /**
+     * Evaluates the preconditions of a request against what is known without a query:
+     * the entity tag last sent while the collection is unchanged, and the time it last
+     * changed. If-Modified-Since is only considered without If-None-Match.
+     */
+    private static boolean isNotModified(WebRequest request, String knownETag, CollectionVersion version) {
+        HttpHeaders headers = new HttpHeaders();
+        String[] ifNoneMatch = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch != null) {
+            if (knownETag == null) {
+                return false;
+            }
+            headers.put(HttpHeaders.IF_NONE_MATCH, Arrays.asList(ifNoneMatch));
+            String quotedETag = "\"" + knownETag + "\"";
+            // Weak comparison, as for If-None-Match
+            return headers.getIfNoneMatch().stream()
+                    .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                    .anyMatch(tag -> tag.equals("*") || tag.equals(quotedETag));
+        }
+
+        String ifModifiedSince = request.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince == null) {
+            return false;
+        }
         try {
-            // TODO Replace the conversion logic with a custom type converter
-            //  Note: The deserialisation of multiple JSON filter parameters doesn't work without enclosing brackets.
-            //  Hence they are added here.
-            //  I was also unable to correctly coerce a single filter into an array or list using @RequestParam.
-            //  Multiple filters work as expected, but a single parameter is still split up for some reason.
-            filters = "[" + filters + "]";
-            LanguageFilter languageFilters[] = new ObjectMapper()
-                    .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
-                    .readValue(filters, LanguageFilter[].class);
-
-            return repository.search(languageFilters);
-        } catch (IOException e) {
-            throw new InvalidParameterException(filters);
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+            // Dates are sent with second precision
+            return headers.getIfModifiedSince() >= version.getModifiedAt() / 1000 * 1000;
+        } catch (IllegalArgumentException ex) {
+            // Invalid dates are ignored
+            return false;
+        }
+    }
+
+    private static ResponseEntity<SerializedResponse> notModified(String knownETag, CollectionVersion version) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .lastModified(version.getModifiedAt());
+        if (knownETag != null) {
+            response.eTag(knownETag);
         }
+        return response.build();
     }
 
 }
@@ -0,0 +1,54 @@
+package io.tradeledger.searchfacade.controller;
+
+import io.tradeledger.searchfacade.export.ExportCompression;
+import io.tradeledger.searchfacade.export.ExportFormat;
+import io.tradeledger.searchfacade.export.LanguageExporter;
+import io.tradeledger.searchfacade.filter.Filter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.channels.Channels;
+
+/**
+ * Exports languages as stored, for downstream jobs that need all matching documents.
+ */
+@RestController
+public class LanguageExportController {
+
+    private final LanguageExporter exporter;
+
+    public LanguageExportController(LanguageExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Streams the languages matching the filters, if any, as raw BSON or as NDJSON,
+     * optionally gzip compressed, in which case the response has a gzip content encoding.
+     */
+    @GetMapping("/languages/export")
+    public ResponseEntity<StreamingResponseBody> exportLanguages(@RequestParam(value="filter", required=false) Filter[] filters,
+                                                                 @RequestParam(value="format", defaultValue="ndjson") String format,
+                                                                 @RequestParam(value="compression", required=false) String compression) {
+        Filter[] parsedFilters = filters == null ? new Filter[0] : filters;
+        // Checked up front so that invalid parameters are still reported as a bad request
+        ExportFormat exportFormat = ExportFormat.of(format);
+        ExportCompression exportCompression = ExportCompression.of(compression);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.valueOf(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"language"
+                        + exportFormat.getExtension() + exportCompression.getExtension() + "\"");
+        if (exportCompression.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, exportCompression.getContentEncoding());
+        }
+
+        return response.body(outputStream ->
+                exporter.export(parsedFilters, exportFormat, exportCompression, Channels.newChannel(outputStream)));
+    }
+
+}
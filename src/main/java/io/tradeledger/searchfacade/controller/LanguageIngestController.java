@@ -0,0 +1,33 @@
+package io.tradeledger.searchfacade.controller;
+
+import io.tradeledger.searchfacade.ingest.BulkIngester;
+import io.tradeledger.searchfacade.ingest.IngestReport;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads languages in bulk, as the write path for large reloads.
+ */
+@RestController
+public class LanguageIngestController {
+
+    private final BulkIngester ingester;
+
+    public LanguageIngestController(BulkIngester ingester) {
+        this.ingester = ingester;
+    }
+
+    /**
+     * Ingests newline-delimited JSON, one language per line, as it is received, and
+     * returns a report of the records written and rejected once all are processed.
+     * Invalid records are skipped rather than failing the request.
+     */
+    @PostMapping(value = "/languages/bulk", consumes = LanguageController.APPLICATION_NDJSON_VALUE)
+    public IngestReport ingestLanguages(InputStream body) throws IOException {
+        return ingester.ingest(body);
+    }
+
+}
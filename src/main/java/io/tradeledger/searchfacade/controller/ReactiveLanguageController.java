@@ -0,0 +1,114 @@
+package io.tradeledger.searchfacade.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.tradeledger.searchfacade.admission.QueryGuard;
+import io.tradeledger.searchfacade.exception.LanguageNotFoundException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.ReactiveLanguageRepository;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking variant of {@link LanguageController}, served under {@code /reactive}.
+ *
+ * <p>The request thread is released as soon as the query has been sent, and the
+ * response is completed once the database replies.
+ */
+@RestController
+@RequestMapping("/reactive")
+public class ReactiveLanguageController {
+
+    private final ReactiveLanguageRepository repository;
+    private final QueryGuard guard;
+    private final LanguageSchema schema;
+    private final ObjectMapper projectedMapper;
+    private final int maxPageSize;
+
+    public ReactiveLanguageController(ReactiveLanguageRepository repository, QueryGuard guard, LanguageSchema schema,
+                                      ObjectMapper objectMapper,
+                                      @Value("${searchfacade.search.max-page-size}") int maxPageSize) {
+        this.repository = repository;
+        this.guard = guard;
+        this.schema = schema;
+        this.projectedMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.maxPageSize = maxPageSize;
+    }
+
+    @GetMapping("/languages/{id}")
+    public Mono<Language> getLanguage(@PathVariable String id) {
+        return repository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new LanguageNotFoundException(id))));
+    }
+
+    /**
+     * Returns a single page of search results, as in {@link LanguageController#searchLanguages}.
+     */
+    @GetMapping(value = "/languages/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<?>>> searchLanguages(@RequestParam(value="filter") Filter[] filters,
+                                                         @RequestParam(value="sort", required=false) String sort,
+                                                         @RequestParam(value="size", required=false) Integer size,
+                                                         @RequestParam(value="pageToken", required=false) String pageToken,
+                                                         @RequestParam(value="fields", required=false) String[] fields) {
+        Projection projection = Projection.of(schema, fields);
+        SearchPageRequest pageRequest = SearchPageRequest.of(schema, sort, pageToken, size, maxPageSize)
+                .withProjection(projection);
+
+        guard.check(filters, pageRequest);
+
+        return repository.search(filters, pageRequest)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    page.getNextPageToken().ifPresent(token -> response.header(LanguageController.NEXT_PAGE_TOKEN, token));
+                    return response.body(projection.isAll() ? page.getContent() : project(page.getContent()));
+                });
+    }
+
+    /**
+     * Streams all search results as they arrive from the database cursor, or only
+     * the first page if there are too many to stream, as in {@link LanguageController#streamLanguages}.
+     */
+    @GetMapping(value = "/languages/search", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Mono<ResponseEntity<Flux<Language>>> streamLanguages(@RequestParam(value="filter") Filter[] filters) {
+        SearchPageRequest firstPage = SearchPageRequest.first(maxPageSize);
+        if (!guard.mustPaginate(filters, firstPage)) {
+            return Mono.just(ResponseEntity.ok(repository.search(filters)));
+        }
+
+        // The token of the next page goes into a header, so the response waits for the page
+        return repository.search(filters, firstPage)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    page.getNextPageToken().ifPresent(token -> response.header(LanguageController.NEXT_PAGE_TOKEN, token));
+                    return response.body(Flux.fromIterable(page.getContent()));
+                });
+    }
+
+    /**
+     * Converts projected languages to JSON trees without the fields left out, which are null.
+     */
+    private List<JsonNode> project(List<Language> languages) {
+        List<JsonNode> projected = new ArrayList<>(languages.size());
+        for (Language language : languages) {
+            projected.add(projectedMapper.valueToTree(language));
+        }
+        return projected;
+    }
+
+}
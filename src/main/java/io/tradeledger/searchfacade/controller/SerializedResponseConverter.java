@@ -0,0 +1,47 @@
+package io.tradeledger.searchfacade.controller;
+
+import io.tradeledger.searchfacade.cache.SerializedResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes already encoded JSON responses straight to the response body, without
+ * copying them into a single array first.
+ */
+public class SerializedResponseConverter extends AbstractHttpMessageConverter<SerializedResponse> {
+
+    public SerializedResponseConverter() {
+        super(MediaType.APPLICATION_JSON_UTF8, MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SerializedResponse.class.equals(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected SerializedResponse readInternal(Class<? extends SerializedResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Serialized responses are write-only");
+    }
+
+    @Override
+    protected Long getContentLength(SerializedResponse response, MediaType contentType) {
+        return response.getContentLength();
+    }
+
+    @Override
+    protected void writeInternal(SerializedResponse response, HttpOutputMessage outputMessage) throws IOException {
+        response.writeTo(outputMessage.getBody());
+    }
+
+}
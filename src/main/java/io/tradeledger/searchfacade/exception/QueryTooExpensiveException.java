@@ -0,0 +1,9 @@
+package io.tradeledger.searchfacade.exception;
+
+public class QueryTooExpensiveException extends RuntimeException {
+
+    public QueryTooExpensiveException(String reason) {
+        super("Query too expensive: " + reason);
+    }
+
+}
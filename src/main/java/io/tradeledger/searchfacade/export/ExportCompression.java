@@ -0,0 +1,51 @@
+package io.tradeledger.searchfacade.export;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+
+import java.util.Locale;
+
+/**
+ * The compression of an export.
+ */
+public enum ExportCompression {
+
+    NONE(null, ""),
+    GZIP("gzip", ".gz");
+
+    private final String contentEncoding;
+    private final String extension;
+
+    ExportCompression(String contentEncoding, String extension) {
+        this.contentEncoding = contentEncoding;
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the HTTP content coding, or null if uncompressed.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the compression with the given name, in any case, or none if null.
+     *
+     * @throws InvalidParameterException if there is no such compression
+     */
+    public static ExportCompression of(String name) {
+        if (name == null) {
+            return NONE;
+        }
+
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException("Unsupported compression: " + name);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package io.tradeledger.searchfacade.export;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+
+import java.util.Locale;
+
+/**
+ * The format of an export.
+ */
+public enum ExportFormat {
+
+    /**
+     * Concatenated BSON documents as stored, as written by {@code mongodump}.
+     */
+    BSON("application/bson", ".bson"),
+
+    /**
+     * One document per line as relaxed MongoDB Extended JSON.
+     */
+    NDJSON("application/x-ndjson", ".ndjson");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the format with the given name, in any case.
+     *
+     * @throws InvalidParameterException if there is no such format
+     */
+    public static ExportFormat of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException("Invalid export format: " + name);
+        }
+    }
+
+}
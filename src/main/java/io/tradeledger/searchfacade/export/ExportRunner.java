@@ -0,0 +1,88 @@
+package io.tradeledger.searchfacade.export;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Runs an export from the command line and exits, given {@code --export=<file>}.
+ *
+ * <p>The filters, format and compression are given as {@code --export.filter},
+ * {@code --export.format} and {@code --export.compression}, as for the export
+ * endpoint; {@code --export.filter} may be given several times. Run with {@code --spring.main.web-application-type=none} to skip
+ * starting the web server.
+ */
+@Component
+public class ExportRunner implements ApplicationRunner {
+
+    static final String EXPORT = "export";
+
+    private static final Logger log = LoggerFactory.getLogger(ExportRunner.class);
+
+    private final LanguageExporter exporter;
+    private final LanguageSchema schema;
+    private final ConfigurableApplicationContext context;
+
+    public ExportRunner(LanguageExporter exporter, LanguageSchema schema, ConfigurableApplicationContext context) {
+        this.exporter = exporter;
+        this.schema = schema;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(EXPORT)) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            export(args);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Export failed", ex);
+            exitCode = 1;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    private void export(ApplicationArguments args) throws IOException {
+        List<String> filters = args.getOptionValues(EXPORT + ".filter");
+        Filter[] parsedFilters = filters == null ? new Filter[0]
+                : LanguageFilterParser.parse(schema, filters.toArray(new String[0]));
+        ExportFormat format = ExportFormat.of(getOption(args, EXPORT + ".format", "ndjson"));
+        ExportCompression compression = ExportCompression.of(getOption(args, EXPORT + ".compression", null));
+        String file = getOption(args, EXPORT, null);
+        if (file == null) {
+            throw new IllegalArgumentException("No file to export to, expected --" + EXPORT + "=<file>");
+        }
+        Path output = Paths.get(file);
+
+        try (FileChannel channel = FileChannel.open(output,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long count = exporter.export(parsedFilters, format, compression, channel);
+            log.info("Exported {} languages to {}", count, output.toAbsolutePath());
+        }
+    }
+
+    private static String getOption(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+}
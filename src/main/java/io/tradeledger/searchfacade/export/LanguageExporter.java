@@ -0,0 +1,134 @@
+package io.tradeledger.searchfacade.export;
+
+import com.mongodb.client.MongoCursor;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.LanguageRepository;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the languages matching a set of filters, as stored.
+ *
+ * <p>Documents are read from a MongoDB cursor in large batches as raw BSON and are
+ * never decoded into languages. As BSON, their bytes are passed through as they
+ * came from the server; as NDJSON, they are rendered straight from the raw bytes
+ * as Extended JSON, without Jackson. Output is gathered in a buffer of the
+ * configured size and written to the channel a buffer at a time.
+ */
+@Component
+public class LanguageExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LanguageExporter.class);
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final MongoOperations operations;
+    private final LanguageRepository repository;
+    private final int batchSize;
+    private final int bufferSize;
+
+    public LanguageExporter(MongoOperations operations, LanguageRepository repository,
+                            @Value("${searchfacade.export.batch-size}") int batchSize,
+                            @Value("${searchfacade.export.buffer-size}") int bufferSize) {
+        this.operations = operations;
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Writes the languages matching the filters to a channel, which is left open.
+     *
+     * @param filters the filters, or none to export the whole collection
+     * @param format the format to write
+     * @param compression the compression to apply
+     * @param channel the channel to write to
+     * @return the number of languages written
+     * @throws IOException if the channel cannot be written to
+     */
+    public long export(Filter[] filters, ExportFormat format, ExportCompression compression,
+                       WritableByteChannel channel) throws IOException {
+        long startedAt = System.nanoTime();
+        Document filter = new QueryMapper(operations.getConverter()).getMappedObject(
+                repository.getQuery(filters).getQueryObject(),
+                operations.getConverter().getMappingContext().getRequiredPersistentEntity(Language.class));
+
+        GZIPOutputStream gzip = compression == ExportCompression.GZIP
+                ? new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize) : null;
+        WritableByteChannel target = gzip != null ? Channels.newChannel(gzip) : channel;
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        long count = 0;
+
+        try (MongoCursor<RawBsonDocument> cursor = operations.getCollection(operations.getCollectionName(Language.class))
+                .withDocumentClass(RawBsonDocument.class)
+                .find(filter)
+                .batchSize(batchSize)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                RawBsonDocument document = cursor.next();
+                if (format == ExportFormat.BSON) {
+                    write(document.getByteBuffer().asNIO(), buffer, target);
+                } else {
+                    write(ByteBuffer.wrap(document.toJson(JSON_SETTINGS).getBytes(StandardCharsets.UTF_8)), buffer, target);
+                    write(ByteBuffer.wrap(NEWLINE), buffer, target);
+                }
+                count++;
+            }
+        }
+
+        flush(buffer, target);
+        if (gzip != null) {
+            gzip.finish();
+            gzip.flush();
+        }
+
+        log.info("Exported {} languages as {} in {} ms",
+                count, format, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return count;
+    }
+
+    /**
+     * Adds bytes to the buffer, writing the buffer out first if they do not fit,
+     * or writing them out directly if they do not fit in an empty buffer either.
+     */
+    private static void write(ByteBuffer bytes, ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        if (bytes.remaining() > buffer.remaining()) {
+            flush(buffer, channel);
+            if (bytes.remaining() > buffer.capacity()) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.tradeledger.searchfacade.filter;
+
+import java.util.Collection;
+
+/**
+ * Resolves the attribute names read by the filter parser to the canonical names
+ * of the schema, so that the same attribute is always the same string.
+ *
+ * <p>Names are matched against the characters read, without creating a string,
+ * and names that are not in the schema are not kept anywhere: the set of names
+ * is fixed by the schema, so arbitrary attributes cannot grow it.
+ */
+final class AttributeNames {
+
+    private final String[] names;
+
+    AttributeNames(Collection<String> names) {
+        this.names = names.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the canonical name holding the given range of characters.
+     *
+     * @return the name, or null if the attribute is not in the schema
+     */
+    String resolve(char[] chars, int offset, int length) {
+        for (String name : names) {
+            if (matches(name, chars, offset, length)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a string holds the given range of characters.
+     */
+    static boolean matches(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
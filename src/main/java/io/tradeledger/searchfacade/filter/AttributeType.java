@@ -0,0 +1,138 @@
+package io.tradeledger.searchfacade.filter;
+
+import java.math.BigInteger;
+
+/**
+ * The BSON types searchable attributes are stored and indexed as, by their
+ * MongoDB {@code $type} alias, and how filter values are coerced to them.
+ */
+public enum AttributeType {
+
+    STRING("string"),
+    INT32("int"),
+    INT64("long"),
+    DOUBLE("double"),
+    BOOLEAN("bool");
+
+    private final String alias;
+
+    AttributeType(String alias) {
+        this.alias = alias;
+    }
+
+    /**
+     * Returns the type of the given alias, e.g. {@code string}.
+     *
+     * @throws IllegalArgumentException if there is no such type
+     */
+    public static AttributeType of(String alias) {
+        for (AttributeType type : values()) {
+            if (type.alias.equals(alias)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown attribute type: " + alias);
+    }
+
+    /**
+     * Returns the type a Java type is stored as by the mapping layer.
+     *
+     * @throws IllegalArgumentException if the type cannot be searched by
+     */
+    public static AttributeType of(Class<?> javaType) {
+        if (javaType == String.class) {
+            return STRING;
+        } else if (javaType == Integer.class || javaType == int.class
+                || javaType == Short.class || javaType == short.class) {
+            return INT32;
+        } else if (javaType == Long.class || javaType == long.class) {
+            return INT64;
+        } else if (javaType == Double.class || javaType == double.class
+                || javaType == Float.class || javaType == float.class) {
+            return DOUBLE;
+        } else if (javaType == Boolean.class || javaType == boolean.class) {
+            return BOOLEAN;
+        }
+        throw new IllegalArgumentException("Unsupported attribute type: " + javaType.getName());
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * Returns whether values of this type can be searched by range.
+     */
+    public boolean isNumeric() {
+        return this == INT32 || this == INT64 || this == DOUBLE;
+    }
+
+    /**
+     * Converts a filter value to this type, if it represents a value of this type,
+     * e.g. {@code "8"} or {@code 8.0} to the 32-bit integer {@code 8}, or {@code true}
+     * to the string {@code "true"}.
+     *
+     * @param value a string, number or boolean
+     * @return the value of this type, or null if the value does not represent one
+     */
+    public Object coerce(Object value) {
+        switch (this) {
+            case STRING:
+                if (value instanceof String) {
+                    return value;
+                }
+                return value instanceof Boolean || toLong(value) != null ? value.toString() : null;
+            case INT32:
+                if (value instanceof Integer) {
+                    return value;
+                }
+                Long number = toLong(value);
+                return number != null && number == number.intValue() ? number.intValue() : null;
+            case INT64:
+                return toLong(value);
+            case DOUBLE:
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                return value instanceof String ? parseDouble((String) value) : null;
+            case BOOLEAN:
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                return "true".equals(value) ? Boolean.TRUE : "false".equals(value) ? Boolean.FALSE : null;
+            default:
+                throw new IllegalStateException("Unknown attribute type: " + this);
+        }
+    }
+
+    /**
+     * Returns the integral value a number or string represents, or null if it has a
+     * fraction, is out of range or is not a number.
+     */
+    private static Long toLong(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof BigInteger) {
+            return ((BigInteger) value).bitLength() < Long.SIZE ? ((BigInteger) value).longValue() : null;
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            return number == Math.rint(number) && Math.abs(number) < 0x1p63 ? (long) number : null;
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+}
@@ -2,8 +2,54 @@ package io.tradeledger.searchfacade.filter;
 
 import org.springframework.data.mongodb.core.query.Criteria;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface Filter {
 
     Criteria getCriteria();
 
+    String getAttribute();
+
+    /**
+     * Returns the attributes this filter matches, which for a group of alternatives
+     * are those of its branches rather than a single one.
+     *
+     * @return the attributes, without duplicates
+     */
+    default List<String> getAttributes() {
+        return Collections.singletonList(getAttribute());
+    }
+
+    /**
+     * Returns whether this filter matches a range of values rather than a single one.
+     *
+     * @return true for range filters, false for equality filters
+     */
+    boolean isRange();
+
+    /**
+     * Returns the shape of this filter: its attribute, operator and value type,
+     * but not the value itself. Filters that only differ in their values share a shape.
+     *
+     * @return the shape of this filter
+     */
+    String getShape();
+
+    /**
+     * Returns the attribute and operator of this filter, e.g. {@code version:gte}.
+     * Coarser than the shape, as the value type is left out as well.
+     *
+     * @return the attribute and operator of this filter
+     */
+    String getOperatorShape();
+
+    /**
+     * Returns the value the attribute is matched against in a query document,
+     * e.g. {@code "Java"} or {@code {"$gte": 7}}.
+     *
+     * @return the query value
+     */
+    Object getQueryValue();
+
 }
@@ -0,0 +1,62 @@
+package io.tradeledger.searchfacade.filter;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+
+/**
+ * The operators a filter compares its attribute with, by the name used in the filter parameter.
+ * {@link #IN} matches any of a list of values, and is an equality like {@link #EQ}.
+ */
+public enum FilterOperator {
+
+    EQ("eq"),
+    GTE("gte"),
+    LTE("lte"),
+    IN("in");
+
+    private static final FilterOperator[] OPERATORS = values();
+
+    private final String name;
+
+    FilterOperator(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the operator of the given name, e.g. {@code gte}.
+     *
+     * @throws InvalidParameterException if there is no such operator
+     */
+    public static FilterOperator of(String name) {
+        for (FilterOperator operator : OPERATORS) {
+            if (operator.name.equals(name)) {
+                return operator;
+            }
+        }
+        throw new InvalidParameterException("Invalid operator: " + name);
+    }
+
+    /**
+     * Returns the operator whose name is held in a range of characters, as
+     * exposed by a JSON parser, without creating a string from them.
+     *
+     * @return the operator, or null if there is no such operator
+     */
+    static FilterOperator of(char[] chars, int offset, int length) {
+        for (FilterOperator operator : OPERATORS) {
+            if (AttributeNames.matches(operator.name, chars, offset, length)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
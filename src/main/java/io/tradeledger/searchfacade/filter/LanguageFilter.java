@@ -1,38 +1,32 @@
 package io.tradeledger.searchfacade.filter;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import org.bson.Document;
 import org.springframework.data.mongodb.core.query.Criteria;
 
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
+/**
+ * A filter on a language attribute, as given in the filter request parameter:
+ * the attribute compared with a value by an operator, or a range of values.
+ * With the {@code in} operator, the value is a list of the values matched.
+ * Parsed by {@link LanguageFilterParser}.
+ */
 public final class LanguageFilter implements Filter {
 
     private final String attribute;
-    private final String operator;
-    private Object value; // Can be either a String or an Integer
-    private Integer rangeFrom;
-    private Integer rangeTo;
-
-    private static final String EQUALS = "eq";
-    private static final String GREATER_THAN_EQUALS = "gte";
-    private static final String LOWER_THAN_EQUALS = "lte";
-    private static final List<String> VALID_OPERATORS = Arrays.asList(EQUALS, GREATER_THAN_EQUALS, LOWER_THAN_EQUALS);
-
-    public LanguageFilter(@JsonProperty(value= "attribute", required = true) String attribute,
-                          @JsonProperty(value= "operator", required = true) String operator) {
-        if (!VALID_OPERATORS.contains(operator)) {
-            throw new InvalidParameterException("Invalid operator: " + operator);
-        }
+    private final FilterOperator operator;
+    private final Object value; // A String, number or boolean, or a List of them for in
+    private final Integer rangeFrom;
+    private final Integer rangeTo;
 
-        this.attribute = attribute;
-        this.operator = operator;
+    public LanguageFilter(String attribute, String operator, Object value,
+                          Integer rangeFrom, Integer rangeTo) {
+        this(attribute, FilterOperator.of(operator), value, rangeFrom, rangeTo);
     }
 
-    public LanguageFilter(String attribute, String operator, Object value,
+    public LanguageFilter(String attribute, FilterOperator operator, Object value,
                           Integer rangeFrom, Integer rangeTo) {
         this.attribute = attribute;
         this.operator = operator;
@@ -41,20 +35,6 @@ public final class LanguageFilter implements Filter {
         this.rangeTo = rangeTo;
     }
 
-    @JsonProperty("range")
-    private void unpackRange(Map<String,Integer> range) {
-        if (value != null) {
-            throw new InvalidParameterException("Both value and range are not allowed.");
-        }
-
-        if (!operator.equals(EQUALS)) {
-            throw new InvalidParameterException("Invalid operator for range.");
-        }
-
-        this.rangeFrom = range.get("from");
-        this.rangeTo = range.get("to");
-    }
-
     /**
      * Returns the Criteria query represented by this object.
      *
@@ -64,25 +44,81 @@ public final class LanguageFilter implements Filter {
     public Criteria getCriteria() {
         if (value != null) {
             switch (operator) {
-                case EQUALS:
+                case EQ:
                     return Criteria.where(attribute).is(value);
-                case GREATER_THAN_EQUALS:
+                case GTE:
                     return Criteria.where(attribute).gte(value);
-                case LOWER_THAN_EQUALS:
+                case LTE:
                     return Criteria.where(attribute).lte(value);
+                case IN:
+                    return Criteria.where(attribute).in((Collection<?>) value);
                 default:
-                    throw new InvalidParameterException("Invalid operator: " + operator);
+                    throw new IllegalStateException("Unknown operator: " + operator);
             }
         }
 
         return Criteria.where(attribute).gte(rangeFrom).lte(rangeTo);
     }
 
+    @Override
+    public boolean isRange() {
+        return value == null || (operator != FilterOperator.EQ && operator != FilterOperator.IN);
+    }
+
+    @Override
+    public String getShape() {
+        if (value == null) {
+            return attribute + ":range";
+        }
+
+        // The values of in are all coerced to the attribute's type, so the first one stands for all
+        Object typed = operator == FilterOperator.IN ? ((List<?>) value).get(0) : value;
+        return attribute + ':' + operator.getName() + ':' + getValueType(typed);
+    }
+
+    @Override
+    public String getOperatorShape() {
+        return value == null ? attribute + ":range" : attribute + ':' + operator.getName();
+    }
+
+    @Override
+    public Object getQueryValue() {
+        if (value != null) {
+            switch (operator) {
+                case EQ:
+                    return value;
+                case GTE:
+                    return new Document("$gte", value);
+                case LTE:
+                    return new Document("$lte", value);
+                case IN:
+                    return new Document("$in", value);
+                default:
+                    throw new IllegalStateException("Unknown operator: " + operator);
+            }
+        }
+
+        return new Document("$gte", rangeFrom).append("$lte", rangeTo);
+    }
+
+    private static String getValueType(Object value) {
+        if (value instanceof String) {
+            return "string";
+        } else if (value instanceof Number) {
+            return "number";
+        } else if (value instanceof Boolean) {
+            return "boolean";
+        }
+
+        return "object";
+    }
+
+    @Override
     public String getAttribute() {
         return attribute;
     }
 
-    public String getOperator() {
+    public FilterOperator getOperator() {
         return operator;
     }
 
@@ -115,7 +151,7 @@ public final class LanguageFilter implements Filter {
         if (o == null || getClass() != o.getClass()) return false;
         LanguageFilter that = (LanguageFilter) o;
         return Objects.equals(attribute, that.attribute) &&
-                Objects.equals(operator, that.operator) &&
+                operator == that.operator &&
                 Objects.equals(value, that.value) &&
                 Objects.equals(rangeFrom, that.rangeFrom) &&
                 Objects.equals(rangeTo, that.rangeTo);
@@ -0,0 +1,53 @@
+package io.tradeledger.searchfacade.filter;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import org.springframework.core.convert.converter.Converter;
+
+/**
+ * Binds the filter request parameter to filters, so that handler methods can
+ * take {@code @RequestParam("filter") Filter[]}, whether the parameter is given
+ * once or several times. Parsing is timed as the {@link SearchMetrics#PARSE} stage.
+ */
+public final class LanguageFilterConverter implements Converter<String, Filter[]> {
+
+    private final LanguageSchema schema;
+    private final SearchMetrics metrics;
+
+    public LanguageFilterConverter(LanguageSchema schema, SearchMetrics metrics) {
+        this.schema = schema;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Converts a single value of the filter parameter.
+     */
+    @Override
+    public Filter[] convert(String filters) {
+        return convertAll(filters);
+    }
+
+    /**
+     * Converts a value of the filter parameter holding a single filter.
+     *
+     * @throws InvalidParameterException if the value holds no or several filters
+     */
+    public Filter convertOne(String filter) {
+        Filter[] parsed = convertAll(filter);
+        if (parsed.length != 1) {
+            throw new InvalidParameterException("Expected a single filter: " + filter);
+        }
+        return parsed[0];
+    }
+
+    /**
+     * Converts all values of the filter parameter, as bound when it is given several times.
+     */
+    public Filter[] convertAll(String... filters) {
+        long startedAt = metrics.start();
+        Filter[] parsed = LanguageFilterParser.parse(schema, filters);
+        metrics.stop(SearchMetrics.PARSE, parsed, startedAt);
+        return parsed;
+    }
+
+}
@@ -0,0 +1,307 @@
+package io.tradeledger.searchfacade.filter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the filter request parameter of the search endpoints into language filters.
+ *
+ * <p>Each value of the parameter holds one or more filter objects separated by
+ * commas. The values are read as a single JSON array straight from the strings,
+ * token by token, so that neither the values nor the filters go through any
+ * intermediate representation: attribute names are resolved to the schema's, operators are
+ * matched in place, and only the filters themselves and their values are created.
+ *
+ * <p>Attributes must be in the {@link LanguageSchema}, and values are coerced to
+ * the type the attribute is stored as. Only numeric attributes are searched by range.
+ *
+ * <p>The {@code in} operator takes an array of values. An object holding only an
+ * {@code or} array of filters matches any of them; if they are all equalities on
+ * the same attribute, they are folded into a single {@code in} filter, otherwise
+ * they are kept as an {@link OrFilter}. Groups cannot be nested.
+ */
+public final class LanguageFilterParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Filter[] NO_FILTERS = new Filter[0];
+
+    private LanguageFilterParser() {
+    }
+
+    /**
+     * Parses the values of the filter parameter.
+     *
+     * @param schema the searchable attributes
+     * @param filters the values, each holding one or more filters separated by commas
+     * @return the filters of all values, in order
+     * @throws InvalidParameterException if a value is not a valid filter
+     */
+    public static Filter[] parse(LanguageSchema schema, String... filters) {
+        try (JsonParser parser = JSON_FACTORY.createParser(new ParameterReader(filters))) {
+            // Opened by the reader, as it encloses the values in brackets
+            parser.nextToken();
+
+            Filter[] parsed = NO_FILTERS;
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                if (count == parsed.length) {
+                    parsed = Arrays.copyOf(parsed, Math.max(count * 2, filters.length));
+                }
+                parsed[count++] = readFilter(parser, schema, true);
+            }
+
+            if (token != JsonToken.END_ARRAY || parser.nextToken() != null) {
+                throw invalid(filters, "Expected a filter object");
+            }
+            return count == parsed.length ? parsed : Arrays.copyOf(parsed, count);
+        } catch (JsonProcessingException ex) {
+            throw invalid(filters, ex.getOriginalMessage());
+        } catch (IOException ex) {
+            // Not thrown when reading from strings
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Filter readFilter(JsonParser parser, LanguageSchema schema, boolean group) throws IOException {
+        List<LanguageFilter> branches = null;
+        String attribute = null;
+        FilterOperator operator = null;
+        Object value = null;
+        Integer rangeFrom = null;
+        Integer rangeTo = null;
+        boolean range = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are interned by the parser, so these comparisons succeed on the reference check
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "attribute":
+                    expect(parser, token, JsonToken.VALUE_STRING);
+                    attribute = schema.resolve(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    if (attribute == null) {
+                        throw new InvalidParameterException("Unknown attribute: " + parser.getText());
+                    }
+                    break;
+                case "operator":
+                    expect(parser, token, JsonToken.VALUE_STRING);
+                    operator = FilterOperator.of(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    if (operator == null) {
+                        throw new InvalidParameterException("Invalid operator: " + parser.getText());
+                    }
+                    break;
+                case "value":
+                    value = readValue(parser, token);
+                    break;
+                case "or":
+                    expect(parser, token, JsonToken.START_ARRAY);
+                    if (!group) {
+                        throw new InvalidParameterException("Nested or groups are not allowed.");
+                    }
+                    branches = new ArrayList<>();
+                    while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                        branches.add((LanguageFilter) readFilter(parser, schema, false));
+                    }
+                    expect(parser, token, JsonToken.END_ARRAY);
+                    break;
+                case "range":
+                    expect(parser, token, JsonToken.START_OBJECT);
+                    range = true;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String bound = parser.getCurrentName();
+                        expect(parser, parser.nextToken(), JsonToken.VALUE_NUMBER_INT);
+                        if ("from".equals(bound)) {
+                            rangeFrom = parser.getIntValue();
+                        } else if ("to".equals(bound)) {
+                            rangeTo = parser.getIntValue();
+                        } else {
+                            throw new InvalidParameterException("Unknown range bound: " + bound);
+                        }
+                    }
+                    break;
+                default:
+                    throw new InvalidParameterException("Unknown filter field: " + field);
+            }
+        }
+
+        if (branches != null) {
+            if (attribute != null || operator != null || value != null || range) {
+                throw new InvalidParameterException("An or group cannot have other fields.");
+            }
+            return or(branches);
+        }
+        if (attribute == null || operator == null) {
+            throw new InvalidParameterException("Both attribute and operator are required.");
+        }
+        AttributeType type = schema.getType(attribute);
+        if (range) {
+            if (value != null) {
+                throw new InvalidParameterException("Both value and range are not allowed.");
+            }
+            if (operator != FilterOperator.EQ) {
+                throw new InvalidParameterException("Invalid operator for range.");
+            }
+            if (rangeFrom == null || rangeTo == null) {
+                throw new InvalidParameterException("Both range bounds are required.");
+            }
+            if (!type.isNumeric()) {
+                throw new InvalidParameterException("Invalid range for attribute: " + attribute);
+            }
+        } else if (value == null) {
+            throw new InvalidParameterException("Either a value or a range is required.");
+        } else if (operator == FilterOperator.IN) {
+            if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+                throw new InvalidParameterException("A list of values is required for in.");
+            }
+            List<?> values = (List<?>) value;
+            List<Object> coerced = new ArrayList<>(values.size());
+            for (Object element : values) {
+                coerced.add(coerce(type, attribute, element));
+            }
+            value = coerced;
+        } else if (value instanceof List) {
+            throw new InvalidParameterException("Invalid operator for a list of values: " + operator);
+        } else {
+            value = coerce(type, attribute, value);
+        }
+
+        return new LanguageFilter(attribute, operator, value, rangeFrom, rangeTo);
+    }
+
+    /**
+     * Returns the filter matching any of the given ones: a single {@code in} filter
+     * if they are all equalities on the same attribute, or a group otherwise.
+     */
+    private static Filter or(List<LanguageFilter> branches) {
+        if (branches.isEmpty()) {
+            throw new InvalidParameterException("An or group requires at least one filter.");
+        }
+        if (branches.size() == 1) {
+            return branches.get(0);
+        }
+
+        String attribute = branches.get(0).getAttribute();
+        Set<Object> values = new LinkedHashSet<>();
+        for (LanguageFilter branch : branches) {
+            if (!branch.getAttribute().equals(attribute) || branch.isRange()) {
+                return new OrFilter(branches.toArray(new LanguageFilter[0]));
+            }
+            if (branch.getOperator() == FilterOperator.IN) {
+                values.addAll((List<?>) branch.getValue());
+            } else {
+                values.add(branch.getValue());
+            }
+        }
+        return new LanguageFilter(attribute, FilterOperator.IN, new ArrayList<>(values), null, null);
+    }
+
+    private static Object coerce(AttributeType type, String attribute, Object value) {
+        Object coerced = type.coerce(value);
+        if (coerced == null) {
+            throw new InvalidParameterException("Invalid value for " + attribute + ": " + value);
+        }
+        return coerced;
+    }
+
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case START_ARRAY:
+                List<Object> values = new ArrayList<>();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_ARRAY) {
+                        throw new InvalidParameterException("Invalid filter value: nested list");
+                    }
+                    values.add(readValue(parser, token));
+                }
+                return values;
+            default:
+                throw new InvalidParameterException("Invalid filter value: " + parser.getText());
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new InvalidParameterException("Invalid filter field: " + parser.getCurrentName());
+        }
+    }
+
+    private static InvalidParameterException invalid(String[] filters, String reason) {
+        return new InvalidParameterException(String.join(",", filters) + " (" + reason + ")");
+    }
+
+    /**
+     * Reads the values of the filter parameter as a JSON array, i.e. enclosed in
+     * brackets and separated by commas, without concatenating them.
+     */
+    private static final class ParameterReader extends Reader {
+
+        private final String[] values;
+        // The value being read; -1 before the opening bracket, values.length at the closing one
+        private int index = -1;
+        // The position in the value being read; -1 at the separator before it
+        private int position = 0;
+
+        ParameterReader(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int read = 0;
+            while (read < length && index <= values.length) {
+                if (index == -1) {
+                    buffer[offset + read++] = '[';
+                    index++;
+                    position = 0;
+                } else if (index == values.length) {
+                    buffer[offset + read++] = ']';
+                    index++;
+                } else if (position == -1) {
+                    buffer[offset + read++] = ',';
+                    position = 0;
+                } else {
+                    String value = values[index];
+                    int count = Math.min(length - read, value.length() - position);
+                    value.getChars(position, position + count, buffer, offset + read);
+                    read += count;
+                    position += count;
+                    if (position == value.length()) {
+                        index++;
+                        position = -1;
+                    }
+                }
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.tradeledger.searchfacade.filter;
+
+import io.tradeledger.searchfacade.model.Language;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The attributes languages can be searched by, and the BSON type each is stored
+ * and indexed as.
+ *
+ * <p>The attributes are the fields of {@link Language} other than its ID, typed as
+ * the mapping layer stores their declared types. Where stored documents differ,
+ * the type is overridden in {@code searchfacade.schema.type-overrides}, e.g. with
+ * {@code isJvmBased:string}, as the sample data stores booleans as strings.
+ *
+ * <p>Filter values are coerced to the stored type when filters are parsed, so that
+ * e.g. a version of {@code "8"} matches, and is looked up in the index, as {@code 8},
+ * rather than silently matching nothing. Ingested languages are stored with the
+ * same types, so that they are found alike.
+ */
+@Component
+public class LanguageSchema {
+
+    private final Map<String, AttributeType> types;
+    private final AttributeNames names;
+
+    /**
+     * @param overrides the stored types differing from the declared ones, as {@code attribute:alias}
+     */
+    public LanguageSchema(@Value("${searchfacade.schema.type-overrides}") String... overrides) {
+        Map<String, AttributeType> types = new LinkedHashMap<>();
+        MongoPersistentEntity<?> entity = new MongoMappingContext().getRequiredPersistentEntity(Language.class);
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            if (!property.isIdProperty()) {
+                types.put(property.getFieldName(), AttributeType.of(property.getType()));
+            }
+        });
+
+        for (String override : overrides) {
+            if (override.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = override.trim().split(":");
+            if (parts.length != 2 || !types.containsKey(parts[0])) {
+                throw new IllegalArgumentException("Invalid attribute type override: " + override);
+            }
+            types.put(parts[0], AttributeType.of(parts[1]));
+        }
+        this.types = Collections.unmodifiableMap(types);
+        this.names = new AttributeNames(types.keySet());
+    }
+
+    /**
+     * Returns the searchable attributes and their stored types.
+     */
+    public Map<String, AttributeType> getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns the stored type of an attribute.
+     *
+     * @return the type, or null if the attribute cannot be searched by
+     */
+    public AttributeType getType(String attribute) {
+        return types.get(attribute);
+    }
+
+    /**
+     * Returns the canonical name of the attribute held by the given range of characters.
+     *
+     * @return the name, or null if the attribute cannot be searched by
+     */
+    String resolve(char[] chars, int offset, int length) {
+        return names.resolve(chars, offset, length);
+    }
+
+    /**
+     * Converts the attributes of a mapped language document to their stored types, in place.
+     *
+     * @param document the document, as written by the mapping layer
+     * @return the document
+     */
+    public Document toStored(Document document) {
+        types.forEach((attribute, type) -> {
+            Object value = document.get(attribute);
+            if (value != null) {
+                Object stored = type.coerce(value);
+                if (stored == null) {
+                    throw new IllegalArgumentException("Invalid " + attribute + ": " + value);
+                }
+                document.put(attribute, stored);
+            }
+        });
+        return document;
+    }
+
+}
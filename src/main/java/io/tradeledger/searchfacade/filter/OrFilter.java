@@ -0,0 +1,124 @@
+package io.tradeledger.searchfacade.filter;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A group of alternative filters, matching languages that match any of them,
+ * as given by an {@code or} object in the filter request parameter.
+ *
+ * <p>Alternatives on a single attribute by equality are folded into an {@code in}
+ * filter by {@link LanguageFilterParser}, so a group holds filters on different
+ * attributes or ranges. It is not a filter on any one attribute: its attribute is
+ * the {@code $or} operator, and its query value the list of its branches.
+ */
+public final class OrFilter implements Filter {
+
+    public static final String OR = "$or";
+
+    private final List<LanguageFilter> filters;
+
+    public OrFilter(LanguageFilter... filters) {
+        this.filters = Collections.unmodifiableList(Arrays.asList(filters.clone()));
+    }
+
+    @Override
+    public Criteria getCriteria() {
+        Criteria[] criteria = new Criteria[filters.size()];
+        for (int i = 0; i < criteria.length; i++) {
+            criteria[i] = filters.get(i).getCriteria();
+        }
+        return new Criteria().orOperator(criteria);
+    }
+
+    @Override
+    public String getAttribute() {
+        return OR;
+    }
+
+    @Override
+    public List<String> getAttributes() {
+        List<String> attributes = new ArrayList<>(filters.size());
+        for (LanguageFilter filter : filters) {
+            if (!attributes.contains(filter.getAttribute())) {
+                attributes.add(filter.getAttribute());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Returns true, as the group matches no single value of an attribute.
+     */
+    @Override
+    public boolean isRange() {
+        return true;
+    }
+
+    /**
+     * Returns the sorted shapes of the branches, e.g. {@code or(language:eq:string|version:gte:number)},
+     * so that groups differing only in the order of their branches share a shape.
+     */
+    @Override
+    public String getShape() {
+        String[] shapes = new String[filters.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = filters.get(i).getShape();
+        }
+        Arrays.sort(shapes);
+        return "or(" + String.join("|", shapes) + ')';
+    }
+
+    @Override
+    public String getOperatorShape() {
+        String[] shapes = new String[filters.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = filters.get(i).getOperatorShape();
+        }
+        Arrays.sort(shapes);
+        return "or(" + String.join("|", shapes) + ')';
+    }
+
+    /**
+     * Returns the query documents of the branches, e.g. {@code [{"language": "Java"}, {"version": {"$gte": 8}}]}.
+     */
+    @Override
+    public Object getQueryValue() {
+        List<Document> branches = new ArrayList<>(filters.size());
+        for (LanguageFilter filter : filters) {
+            branches.add(new Document(filter.getAttribute(), filter.getQueryValue()));
+        }
+        return branches;
+    }
+
+    public List<LanguageFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public String toString() {
+        return "OrFilter{" +
+                "filters=" + filters +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OrFilter that = (OrFilter) o;
+        return Objects.equals(filters, that.filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filters);
+    }
+
+}
@@ -0,0 +1,213 @@
+package io.tradeledger.searchfacade.index;
+
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.QueryPlan;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the indexes of the language collection in line with the queries run against it.
+ *
+ * <p>On startup, the indexes declared on {@link Language} are created. After that,
+ * the query plans in use are reviewed periodically. For each frequently used plan
+ * without a suitable index, a compound index is recommended in the log, or created
+ * if automatic creation is enabled. Plans whose queries still scan the whole
+ * collection are logged once with their explain output.
+ */
+@Component
+public class IndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexManager.class);
+
+    private final MongoOperations operations;
+    private final QueryPlanCache queryPlans;
+    private final boolean autoCreate;
+    private final long minUses;
+    private final Set<String> explainedShapes = ConcurrentHashMap.newKeySet();
+    // As of the last review, or null before the first
+    private volatile List<IndexInfo> indexes;
+
+    public IndexManager(MongoOperations operations, QueryPlanCache queryPlans,
+                        @Value("${searchfacade.index.auto-create}") boolean autoCreate,
+                        @Value("${searchfacade.index.min-uses}") long minUses) {
+        this.operations = operations;
+        this.queryPlans = queryPlans;
+        this.autoCreate = autoCreate;
+        this.minUses = minUses;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createDeclaredIndexes() {
+        MongoMappingContext mappingContext = (MongoMappingContext) operations.getConverter().getMappingContext();
+        IndexOperations indexOperations = operations.indexOps(Language.class);
+
+        new MongoPersistentEntityIndexResolver(mappingContext)
+                .resolveIndexFor(ClassTypeInformation.from(Language.class))
+                .forEach(index -> {
+                    log.info("Ensuring declared index {}", index.getIndexKeys());
+                    indexOperations.ensureIndex(index);
+                });
+        indexes = indexOperations.getIndexInfo();
+    }
+
+    @Scheduled(initialDelayString = "${searchfacade.index.review-interval-ms}",
+            fixedDelayString = "${searchfacade.index.review-interval-ms}")
+    public void reviewIndexes() {
+        IndexOperations indexOperations = operations.indexOps(Language.class);
+        List<IndexInfo> indexes = indexOperations.getIndexInfo();
+
+        for (QueryPlan plan : queryPlans.getPlans()) {
+            if (plan.getUses() < minUses) {
+                continue;
+            }
+
+            if (!isIndexed(plan, indexes)) {
+                Index index = new Index();
+                plan.getIndexKeys().forEach(key -> index.on(key, Sort.Direction.ASC));
+
+                if (autoCreate) {
+                    log.info("Creating index {} for query shape {}", index.getIndexKeys(), plan.getShape());
+                    indexOperations.ensureIndex(index);
+                    indexes = indexOperations.getIndexInfo();
+                    explainedShapes.remove(plan.getShape());
+                } else {
+                    log.warn("No index for query shape {} ({} uses), recommended index: {}",
+                            plan.getShape(), plan.getUses(), index.getIndexKeys());
+                }
+            }
+
+            explainIfScanning(plan);
+        }
+
+        this.indexes = indexes;
+    }
+
+    /**
+     * Returns whether an index suited the plan as of the last review, or true if
+     * the indexes have not been read yet.
+     *
+     * @param plan the query plan
+     * @return false if the plan's queries are known to scan the collection
+     */
+    public boolean isIndexed(QueryPlan plan) {
+        List<IndexInfo> current = indexes;
+        return current == null || isIndexed(plan, current);
+    }
+
+    /**
+     * Returns whether an attribute is the leading key of an index as of the last
+     * review, so that filters on it alone can use the index, or true if the
+     * indexes have not been read yet.
+     *
+     * @param attribute the attribute
+     * @return false if filters on the attribute are known to scan the collection
+     */
+    public boolean isIndexed(String attribute) {
+        List<IndexInfo> current = indexes;
+        if (current == null) {
+            return true;
+        }
+
+        MongoPersistentProperty property = operations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Language.class).getPersistentProperty(attribute);
+        String key = property == null ? attribute : property.getFieldName();
+        return current.stream().anyMatch(index -> key.equals(index.getIndexFields().get(0).getKey()));
+    }
+
+    /**
+     * Returns whether an index can serve the plan's queries without scanning
+     * the collection: its leading keys must be the plan's equality attributes,
+     * in any order, followed by one of its range attributes.
+     *
+     * @param plan the query plan
+     * @param indexes the existing indexes
+     * @return true if one of the indexes suits the plan
+     */
+    static boolean isIndexed(QueryPlan plan, List<IndexInfo> indexes) {
+        Set<String> equalities = new HashSet<>(plan.getEqualityAttributes());
+        List<String> ranges = plan.getRangeAttributes();
+
+        for (IndexInfo index : indexes) {
+            List<String> keys = index.getIndexFields().stream()
+                    .map(IndexField::getKey)
+                    .collect(Collectors.toList());
+
+            if (keys.size() < equalities.size()
+                    || !new HashSet<>(keys.subList(0, equalities.size())).equals(equalities)) {
+                continue;
+            }
+
+            if (ranges.isEmpty() || (keys.size() > equalities.size() && ranges.contains(keys.get(equalities.size())))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void explainIfScanning(QueryPlan plan) {
+        Document sample = plan.getSample();
+        if (sample == null || explainedShapes.contains(plan.getShape())) {
+            return;
+        }
+
+        Document filter = new QueryMapper(operations.getConverter()).getMappedObject(sample,
+                operations.getConverter().getMappingContext().getPersistentEntity(Language.class));
+        Document command = new Document("explain", new Document("find", operations.getCollectionName(Language.class))
+                .append("filter", filter))
+                .append("verbosity", "queryPlanner");
+
+        try {
+            Document winningPlan = (Document) operations.executeCommand(command)
+                    .get("queryPlanner", Document.class)
+                    .get("winningPlan");
+
+            if (hasStage(winningPlan, "COLLSCAN")) {
+                log.warn("Query shape {} scans the collection: {}", plan.getShape(), winningPlan.toJson());
+            }
+
+            explainedShapes.add(plan.getShape());
+        } catch (RuntimeException ex) {
+            log.debug("Cannot explain query shape {}", plan.getShape(), ex);
+        }
+    }
+
+    private static boolean hasStage(Document stage, String name) {
+        if (stage == null) {
+            return false;
+        }
+
+        if (name.equals(stage.getString("stage")) || hasStage(stage.get("inputStage", Document.class), name)) {
+            return true;
+        }
+
+        List<?> inputStages = stage.get("inputStages", List.class);
+        return inputStages != null && inputStages.stream()
+                .anyMatch(inputStage -> hasStage((Document) inputStage, name));
+    }
+
+}
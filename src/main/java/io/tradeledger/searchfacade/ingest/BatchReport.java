@@ -0,0 +1,67 @@
+package io.tradeledger.searchfacade.ingest;
+
+import java.util.List;
+
+/**
+ * The outcome of writing one batch of records.
+ */
+public final class BatchReport {
+
+    private final int batch;
+    private final int written;
+    private final int failed;
+    private final long durationMs;
+    private final List<RecordError> errors;
+
+    public BatchReport(int batch, int written, int failed, long durationMs, List<RecordError> errors) {
+        this.batch = batch;
+        this.written = written;
+        this.failed = failed;
+        this.durationMs = durationMs;
+        this.errors = errors;
+    }
+
+    /**
+     * Returns the number of the batch, from 1.
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * Returns the number of records MongoDB rejected.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public double getDocumentsPerSecond() {
+        return durationMs == 0 ? written * 1000.0 : written * 1000.0 / durationMs;
+    }
+
+    /**
+     * Returns the write errors, up to the configured maximum.
+     */
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchReport{" +
+                "batch=" + batch +
+                ", written=" + written +
+                ", failed=" + failed +
+                ", durationMs=" + durationMs +
+                '}';
+    }
+
+}
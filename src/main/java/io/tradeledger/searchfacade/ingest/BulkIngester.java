@@ -0,0 +1,292 @@
+package io.tradeledger.searchfacade.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.tradeledger.searchfacade.cache.LanguageCacheInvalidator;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads languages from newline-delimited JSON into MongoDB in unordered bulk writes.
+ *
+ * <p>The input is read one line at a time, and each record is validated as it is
+ * read; invalid records are reported by line number and skipped. Valid records are
+ * collected into batches of the configured size, each written by a background
+ * thread in a single unordered bulk write, so that a failing record does not stop
+ * the rest of its batch. Records with an ID replace the language with that ID, or
+ * are inserted if there is none; records without one are inserted. Attributes are
+ * stored with the types in the {@link LanguageSchema}, so that searches find them.
+ *
+ * <p>At most the configured number of batches per ingest are in flight at once.
+ * Beyond that, reading waits for a batch to complete, so a fast client cannot
+ * buffer more of its input in memory than that. Batches are written by a fixed
+ * number of threads shared by all ingests, so that concurrent ingests queue for
+ * them rather than each adding bulk writes to MongoDB. After each batch, cached results
+ * are dropped and the collection version moves on, as bulk writes raise no
+ * mapping events.
+ */
+@Component
+public class BulkIngester {
+
+    static final String DOCUMENTS = "searchfacade.ingest.documents";
+    static final String BATCHES = "searchfacade.ingest.batches";
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngester.class);
+
+    private final MongoOperations operations;
+    private final ObjectReader recordReader;
+    private final LanguageSchema schema;
+    private final LanguageCacheInvalidator cacheInvalidator;
+    private final LanguageChangeTracker changeTracker;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int maxErrors;
+    private final ExecutorService writers;
+    private final Counter written;
+    private final Counter invalid;
+    private final Counter failed;
+    private final Timer batches;
+
+    public BulkIngester(MongoOperations operations, ObjectMapper objectMapper, LanguageSchema schema,
+                        LanguageCacheInvalidator cacheInvalidator, LanguageChangeTracker changeTracker,
+                        MeterRegistry registry,
+                        @Value("${searchfacade.ingest.batch-size}") int batchSize,
+                        @Value("${searchfacade.ingest.max-in-flight}") int maxInFlight,
+                        @Value("${searchfacade.ingest.max-errors}") int maxErrors,
+                        @Value("${searchfacade.ingest.writer-threads}") int writerThreads) {
+        this.operations = operations;
+        this.recordReader = objectMapper.readerFor(JsonNode.class);
+        this.schema = schema;
+        this.cacheInvalidator = cacheInvalidator;
+        this.changeTracker = changeTracker;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.maxErrors = maxErrors;
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-ingest-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.written = counter(registry, "written");
+        this.invalid = counter(registry, "invalid");
+        this.failed = counter(registry, "failed");
+        this.batches = Timer.builder(BATCHES)
+                .description("Time taken to write a batch of ingested languages")
+                .register(registry);
+    }
+
+    /**
+     * Reads languages from newline-delimited JSON and writes them to MongoDB.
+     *
+     * @param input the input, UTF-8 encoded with one language per line; blank lines are skipped
+     * @return the report, once all batches have been written
+     * @throws IOException if the input cannot be read
+     */
+    public IngestReport ingest(InputStream input) throws IOException {
+        long startedAt = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<BatchReport>> pending = new ArrayList<>();
+        List<RecordError> errors = new ArrayList<>();
+        List<Language> languages = new ArrayList<>(batchSize);
+        List<Long> lines = new ArrayList<>(batchSize);
+        long records = 0;
+        long invalidRecords = 0;
+        long lineNumber = 0;
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                records++;
+                try {
+                    languages.add(LanguageRecords.toLanguage(recordReader.readValue(line)));
+                    lines.add(lineNumber);
+                } catch (JsonProcessingException ex) {
+                    invalidRecords++;
+                    addError(errors, new RecordError(lineNumber, "Invalid JSON: " + ex.getOriginalMessage()));
+                } catch (IllegalArgumentException ex) {
+                    invalidRecords++;
+                    addError(errors, new RecordError(lineNumber, ex.getMessage()));
+                }
+
+                if (languages.size() == batchSize) {
+                    pending.add(submit(pending.size() + 1, languages, lines, inFlight));
+                    languages = new ArrayList<>(batchSize);
+                    lines = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!languages.isEmpty()) {
+                pending.add(submit(pending.size() + 1, languages, lines, inFlight));
+            }
+        } finally {
+            // Batches already submitted are written even if reading fails
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+
+        invalid.increment(invalidRecords);
+        List<BatchReport> reports = new ArrayList<>(pending.size());
+        long writtenRecords = 0;
+        long failedRecords = 0;
+        for (CompletableFuture<BatchReport> batch : pending) {
+            BatchReport report = batch.join();
+            reports.add(report);
+            writtenRecords += report.getWritten();
+            failedRecords += report.getFailed();
+        }
+
+        IngestReport report = new IngestReport(records, writtenRecords, invalidRecords, failedRecords,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), errors, reports);
+        log.info("Ingested {} records: {} written, {} invalid, {} failed in {} ms",
+                records, writtenRecords, invalidRecords, failedRecords, report.getDurationMs());
+        return report;
+    }
+
+    @PreDestroy
+    public void stop() {
+        writers.shutdownNow();
+    }
+
+    private CompletableFuture<BatchReport> submit(int batch, List<Language> languages, List<Long> lines,
+                                                  Semaphore inFlight) {
+        inFlight.acquireUninterruptibly();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return write(batch, languages, lines);
+                } finally {
+                    inFlight.release();
+                }
+            }, writers);
+        } catch (RuntimeException ex) {
+            inFlight.release();
+            throw ex;
+        }
+    }
+
+    private BatchReport write(int batch, List<Language> languages, List<Long> lines) {
+        long startedAt = System.nanoTime();
+        List<RecordError> errors = new ArrayList<>();
+        int failedRecords = 0;
+
+        BulkOperations bulk = operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Language.class);
+        for (Language language : languages) {
+            Document document = toStored(language);
+            if (language.getId() == null) {
+                bulk.insert(document);
+            } else {
+                bulk.upsert(Query.query(Criteria.where("id").is(language.getId())), replacement(document));
+            }
+        }
+
+        try {
+            bulk.execute();
+        } catch (RuntimeException ex) {
+            // Translated, with the driver's exception as the cause
+            MongoBulkWriteException writeErrors = ex instanceof MongoBulkWriteException ? (MongoBulkWriteException) ex
+                    : ex.getCause() instanceof MongoBulkWriteException ? (MongoBulkWriteException) ex.getCause() : null;
+            if (writeErrors != null) {
+                failedRecords = writeErrors.getWriteErrors().size();
+                for (BulkWriteError error : writeErrors.getWriteErrors()) {
+                    addError(errors, new RecordError(lines.get(error.getIndex()), error.getMessage()));
+                }
+            } else {
+                log.warn("Cannot write ingest batch {}", batch, ex);
+                failedRecords = languages.size();
+                addError(errors, new RecordError(lines.get(0), "Batch failed: " + ex.getMessage()));
+            }
+        }
+
+        int writtenRecords = languages.size() - failedRecords;
+        if (writtenRecords > 0) {
+            // Caches first, so that nothing cached before the write is taken to be current after it
+            cacheInvalidator.evictAll();
+            changeTracker.changed();
+        }
+
+        long elapsed = System.nanoTime() - startedAt;
+        batches.record(elapsed, TimeUnit.NANOSECONDS);
+        written.increment(writtenRecords);
+        failed.increment(failedRecords);
+
+        BatchReport report = new BatchReport(batch, writtenRecords, failedRecords,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), errors);
+        log.debug("Ingest batch {}: {} written, {} failed in {} ms ({} documents/s)",
+                batch, writtenRecords, failedRecords, report.getDurationMs(), (long) report.getDocumentsPerSecond());
+        return report;
+    }
+
+    /**
+     * Returns a language as a document, with its attributes of the types searches expect.
+     */
+    private Document toStored(Language language) {
+        Document document = new Document();
+        operations.getConverter().write(language, document);
+        return schema.toStored(document);
+    }
+
+    /**
+     * Returns an update setting every field of a language document but its ID,
+     * which replaces the stored language as all fields are required.
+     */
+    private Update replacement(Document document) {
+        Update update = new Update();
+        document.forEach((field, value) -> {
+            if (!"_id".equals(field) && !"_class".equals(field)) {
+                update.set(field, value);
+            }
+        });
+        return update;
+    }
+
+    private void addError(List<RecordError> errors, RecordError error) {
+        if (errors.size() < maxErrors) {
+            errors.add(error);
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder(DOCUMENTS)
+                .description("Ingested languages, by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+}
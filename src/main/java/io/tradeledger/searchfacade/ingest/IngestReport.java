@@ -0,0 +1,85 @@
+package io.tradeledger.searchfacade.ingest;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk ingest: totals, the records that could not be read,
+ * and a report per batch written.
+ */
+public final class IngestReport {
+
+    private final long records;
+    private final long written;
+    private final long invalid;
+    private final long failed;
+    private final long durationMs;
+    private final List<RecordError> errors;
+    private final List<BatchReport> batches;
+
+    public IngestReport(long records, long written, long invalid, long failed, long durationMs,
+                        List<RecordError> errors, List<BatchReport> batches) {
+        this.records = records;
+        this.written = written;
+        this.invalid = invalid;
+        this.failed = failed;
+        this.durationMs = durationMs;
+        this.errors = errors;
+        this.batches = batches;
+    }
+
+    /**
+     * Returns the number of non-blank lines read.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Returns the number of records that were not valid languages, and were not written.
+     */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Returns the number of valid records MongoDB rejected.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public double getDocumentsPerSecond() {
+        return durationMs == 0 ? written * 1000.0 : written * 1000.0 / durationMs;
+    }
+
+    /**
+     * Returns the invalid records, up to the configured maximum.
+     */
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    public List<BatchReport> getBatches() {
+        return batches;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestReport{" +
+                "records=" + records +
+                ", written=" + written +
+                ", invalid=" + invalid +
+                ", failed=" + failed +
+                ", durationMs=" + durationMs +
+                '}';
+    }
+
+}
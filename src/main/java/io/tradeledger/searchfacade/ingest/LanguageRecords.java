@@ -0,0 +1,74 @@
+package io.tradeledger.searchfacade.ingest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.tradeledger.searchfacade.model.Language;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads languages from ingested JSON records, in the format the API returns them.
+ *
+ * <p>A record must have a non-empty {@code language}, an integer {@code version}
+ * and a boolean {@code jvmBased}, and may have a string {@code id}. As in the
+ * sample data, {@code isJvmBased} is accepted for {@code jvmBased}, and so are
+ * the strings {@code "true"} and {@code "false"}. Other fields are not allowed.
+ */
+final class LanguageRecords {
+
+    private static final List<String> FIELDS = Arrays.asList("id", "language", "version", "jvmBased", "isJvmBased");
+
+    private LanguageRecords() {
+    }
+
+    /**
+     * Returns the language in a record.
+     *
+     * @param record the record
+     * @return the language
+     * @throws IllegalArgumentException if the record is not a valid language
+     */
+    static Language toLanguage(JsonNode record) {
+        if (!record.isObject()) {
+            throw new IllegalArgumentException("Not a JSON object");
+        }
+
+        for (Iterator<String> names = record.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+        }
+
+        JsonNode id = record.get("id");
+        if (id != null && !id.isTextual()) {
+            throw new IllegalArgumentException("Invalid id: " + id);
+        }
+
+        JsonNode language = record.get("language");
+        if (language == null || !language.isTextual() || language.textValue().isEmpty()) {
+            throw new IllegalArgumentException("Invalid language: " + language);
+        }
+
+        JsonNode version = record.get("version");
+        if (version == null || !version.canConvertToInt() || !version.isIntegralNumber()) {
+            throw new IllegalArgumentException("Invalid version: " + version);
+        }
+
+        return new Language(id == null ? null : id.textValue(), language.textValue(), version.intValue(),
+                toBoolean(record.has("jvmBased") ? record.get("jvmBased") : record.get("isJvmBased")));
+    }
+
+    private static boolean toBoolean(JsonNode jvmBased) {
+        if (jvmBased != null && jvmBased.isBoolean()) {
+            return jvmBased.booleanValue();
+        }
+        if (jvmBased != null && jvmBased.isTextual()
+                && ("true".equals(jvmBased.textValue()) || "false".equals(jvmBased.textValue()))) {
+            return Boolean.parseBoolean(jvmBased.textValue());
+        }
+        throw new IllegalArgumentException("Invalid jvmBased: " + jvmBased);
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.tradeledger.searchfacade.ingest;
+
+/**
+ * A record that could not be ingested, by its line number in the request body.
+ */
+public final class RecordError {
+
+    private final long line;
+    private final String message;
+
+    public RecordError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordError{" +
+                "line=" + line +
+                ", message='" + message + '\'' +
+                '}';
+    }
+
+}
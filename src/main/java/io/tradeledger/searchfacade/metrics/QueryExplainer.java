@@ -0,0 +1,57 @@
+package io.tradeledger.searchfacade.metrics;
+
+import io.tradeledger.searchfacade.model.Language;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Explains language queries as MongoDB would run them.
+ */
+final class QueryExplainer {
+
+    private QueryExplainer() {
+    }
+
+    /**
+     * Explains a query with its filter, sort, projection and limit mapped to the stored field names.
+     *
+     * @param operations the operations to run the explain command with
+     * @param query the query
+     * @param verbosity the verbosity, e.g. {@code queryPlanner} or {@code executionStats}
+     * @return the explain output
+     */
+    static Document explain(MongoOperations operations, Query query, String verbosity) {
+        QueryMapper mapper = new QueryMapper(operations.getConverter());
+        MongoPersistentEntity<?> entity = operations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Language.class);
+
+        Document find = new Document("find", operations.getCollectionName(Language.class))
+                .append("filter", mapper.getMappedObject(query.getQueryObject(), entity));
+        if (!query.getSortObject().isEmpty()) {
+            find.append("sort", mapper.getMappedSort(query.getSortObject(), entity));
+        }
+        if (!query.getFieldsObject().isEmpty()) {
+            find.append("projection", mapper.getMappedFields(query.getFieldsObject(), entity));
+        }
+        if (query.getLimit() > 0) {
+            find.append("limit", query.getLimit());
+        }
+
+        return operations.executeCommand(new Document("explain", find).append("verbosity", verbosity));
+    }
+
+    /**
+     * Returns a copy of the parts of a query that are explained, to be explained after
+     * the caller has moved on.
+     */
+    static Query copy(Query query) {
+        BasicQuery copy = new BasicQuery(new Document(query.getQueryObject()), new Document(query.getFieldsObject()));
+        copy.setSortObject(new Document(query.getSortObject()));
+        return copy.limit(query.getLimit());
+    }
+
+}
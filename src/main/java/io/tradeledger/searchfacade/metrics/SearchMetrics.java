@@ -0,0 +1,232 @@
+package io.tradeledger.searchfacade.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.tradeledger.searchfacade.filter.Filter;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long each stage of a search takes and how many documents it returns,
+ * labelled by the operator shape of the filter set, e.g. {@code language:eq,version:gte}.
+ *
+ * <p>Stages are timed as {@value #TIMER} with a {@code stage} tag: parsing the filters,
+ * planning the query, answering it from the replica or from MongoDB, and serializing
+ * the results. The number of documents returned is recorded as {@value #DOCUMENTS}.
+ * Both publish histograms. Every so many MongoDB searches, the query is explained
+ * and its execution stats are recorded as well, and kept per shape for the
+ * {@link SearchMetricsEndpoint}. As the explain runs the query once more, it runs on
+ * a background thread, and samples are dropped while that thread falls behind.
+ *
+ * <p>When disabled, timing a stage costs a field read and nothing is recorded.
+ * Once the configured number of shapes is reached, further shapes are recorded
+ * together, so that arbitrary filters cannot create arbitrarily many meters.
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String PARSE = "parse";
+    public static final String PLAN = "plan";
+    public static final String REPLICA = "replica";
+    public static final String MONGO = "mongo";
+    public static final String SERIALIZE = "serialize";
+
+    static final String TIMER = "searchfacade.search";
+    static final String DOCUMENTS = "searchfacade.search.documents";
+    static final String KEYS_EXAMINED = "searchfacade.search.keys-examined";
+    static final String DOCS_EXAMINED = "searchfacade.search.docs-examined";
+    static final String OTHER_SHAPES = "other";
+
+    private static final Logger log = LoggerFactory.getLogger(SearchMetrics.class);
+    private static final int MAX_PENDING_EXPLAINS = 4;
+
+    private final MeterRegistry registry;
+    private final MongoOperations operations;
+    private final boolean enabled;
+    private final int maxShapes;
+    private final long explainInterval;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> shapes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Document> executionStats = new ConcurrentHashMap<>();
+    private final AtomicLong mongoSearches = new AtomicLong();
+    private final ExecutorService explainer;
+
+    public SearchMetrics(MeterRegistry registry, MongoOperations operations,
+                         @Value("${searchfacade.metrics.enabled}") boolean enabled,
+                         @Value("${searchfacade.metrics.max-shapes}") int maxShapes,
+                         @Value("${searchfacade.metrics.explain-interval}") long explainInterval) {
+        this.registry = registry;
+        this.operations = operations;
+        this.enabled = enabled;
+        this.maxShapes = maxShapes;
+        this.explainInterval = explainInterval;
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_EXPLAINS), runnable -> {
+                    Thread thread = new Thread(runnable, "search-metrics-explainer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Returns metrics that record nothing, e.g. for repositories set up outside the application context.
+     */
+    public static SearchMetrics disabled() {
+        return new SearchMetrics(new SimpleMeterRegistry(), null, false, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time of a stage, to be passed to {@link #stop}.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time taken by a stage.
+     *
+     * @param stage the stage, e.g. {@link #MONGO}
+     * @param filters the filters searched for
+     * @param startedAt the value returned by {@link #start()}
+     */
+    public void stop(String stage, Filter[] filters, long startedAt) {
+        if (!enabled) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - startedAt;
+        String shape = getShape(filters);
+        timers.computeIfAbsent(stage + '|' + shape, key -> Timer.builder(TIMER)
+                .description("Time taken by each stage of a search")
+                .tag("stage", stage)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the number of documents a search returned.
+     */
+    public void recordDocuments(Filter[] filters, int count) {
+        if (enabled) {
+            summary(DOCUMENTS, getShape(filters)).record(count);
+        }
+    }
+
+    /**
+     * Counts a MongoDB search, and every so many searches explains a copy of its query
+     * on a background thread and records the execution stats. The query is run once
+     * more to do so, outside the request and its concurrency limit.
+     *
+     * @param filters the filters searched for
+     * @param query the query that was run
+     */
+    public void sampleExecutionStats(Filter[] filters, Query query) {
+        if (!enabled || explainInterval <= 0 || mongoSearches.incrementAndGet() % explainInterval != 0) {
+            return;
+        }
+
+        String shape = getShape(filters);
+        Query copy = QueryExplainer.copy(query);
+        explainer.execute(() -> explain(shape, copy));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    private void explain(String shape, Query query) {
+        try {
+            Document stats = QueryExplainer.explain(operations, query, "executionStats")
+                    .get("executionStats", Document.class);
+            if (stats == null) {
+                return;
+            }
+
+            summary(KEYS_EXAMINED, shape).record(((Number) stats.get("totalKeysExamined")).doubleValue());
+            summary(DOCS_EXAMINED, shape).record(((Number) stats.get("totalDocsExamined")).doubleValue());
+            executionStats.put(shape, new Document("nReturned", stats.get("nReturned"))
+                    .append("executionTimeMillis", stats.get("executionTimeMillis"))
+                    .append("totalKeysExamined", stats.get("totalKeysExamined"))
+                    .append("totalDocsExamined", stats.get("totalDocsExamined")));
+        } catch (RuntimeException ex) {
+            log.debug("Cannot explain query for shape {}", shape, ex);
+        }
+    }
+
+    /**
+     * Returns the timers recorded so far, by stage and shape.
+     */
+    Map<String, Timer> getTimers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    /**
+     * Returns the document count and execution stats summaries recorded so far, by name and shape.
+     */
+    Map<String, DistributionSummary> getSummaries() {
+        return Collections.unmodifiableMap(summaries);
+    }
+
+    /**
+     * Returns the execution stats last sampled per shape.
+     */
+    Map<String, Document> getExecutionStats() {
+        return Collections.unmodifiableMap(executionStats);
+    }
+
+    /**
+     * Returns the sorted operator shapes of the filters, or {@value #OTHER_SHAPES}
+     * once the maximum number of shapes has been reached.
+     */
+    String getShape(Filter[] filters) {
+        String[] operatorShapes = new String[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            operatorShapes[i] = filters[i].getOperatorShape();
+        }
+        Arrays.sort(operatorShapes);
+        String shape = String.join(",", operatorShapes);
+
+        if (!shapes.containsKey(shape)) {
+            if (shapes.size() >= maxShapes) {
+                return OTHER_SHAPES;
+            }
+            shapes.putIfAbsent(shape, Boolean.TRUE);
+        }
+        return shape;
+    }
+
+    private DistributionSummary summary(String name, String shape) {
+        return summaries.computeIfAbsent(name + '|' + shape, key -> DistributionSummary.builder(name)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+}
@@ -0,0 +1,75 @@
+package io.tradeledger.searchfacade.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summarises the search metrics per filter shape at {@code /actuator/search}: the
+ * count, mean and maximum time of each stage, of the documents returned and of the
+ * keys and documents examined, and the last sampled execution stats.
+ *
+ * <p>The underlying meters, with their histograms, are also available at
+ * {@code /actuator/metrics}.
+ */
+@Component
+@Endpoint(id = "search")
+public class SearchMetricsEndpoint {
+
+    private final SearchMetrics metrics;
+
+    public SearchMetricsEndpoint(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getSearchMetrics() {
+        Map<String, Map<String, Object>> shapes = new TreeMap<>();
+
+        for (Timer timer : metrics.getTimers().values()) {
+            Map<String, Object> stages = (Map<String, Object>) shapes
+                    .computeIfAbsent(timer.getId().getTag("shape"), shape -> new TreeMap<>())
+                    .computeIfAbsent("stages", key -> new TreeMap<>());
+            stages.put(timer.getId().getTag("stage"), summarize(timer));
+        }
+
+        for (DistributionSummary summary : metrics.getSummaries().values()) {
+            String name = summary.getId().getName().substring(SearchMetrics.TIMER.length() + 1);
+            shapes.computeIfAbsent(summary.getId().getTag("shape"), shape -> new TreeMap<>())
+                    .put(name, summarize(summary));
+        }
+
+        metrics.getExecutionStats().forEach((shape, stats) ->
+                shapes.computeIfAbsent(shape, key -> new TreeMap<>()).put("executionStats", stats));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", metrics.isEnabled());
+        result.put("shapes", shapes);
+        return result;
+    }
+
+    private static Map<String, Object> summarize(Timer timer) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", timer.count());
+        summary.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+        summary.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+
+    private static Map<String, Object> summarize(DistributionSummary distribution) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", distribution.count());
+        summary.put("mean", distribution.mean());
+        summary.put("max", distribution.max());
+        return summary;
+    }
+
+}
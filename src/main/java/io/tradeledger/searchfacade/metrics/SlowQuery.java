@@ -0,0 +1,71 @@
+package io.tradeledger.searchfacade.metrics;
+
+import org.bson.Document;
+
+/**
+ * A MongoDB search that took longer than the slow query threshold.
+ */
+public final class SlowQuery {
+
+    private final String time;
+    private final String shape;
+    private final String query;
+    private final long durationMs;
+    private final int resultCount;
+    private volatile Document winningPlan;
+
+    SlowQuery(String time, String shape, String query, long durationMs, int resultCount) {
+        this.time = time;
+        this.shape = shape;
+        this.query = query;
+        this.durationMs = durationMs;
+        this.resultCount = resultCount;
+    }
+
+    /**
+     * Returns when the search completed, in ISO-8601 format.
+     */
+    public String getTime() {
+        return time;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * Returns the winning plan of the query, or null until it has been explained
+     * or if it cannot be.
+     */
+    public Document getWinningPlan() {
+        return winningPlan;
+    }
+
+    void setWinningPlan(Document winningPlan) {
+        this.winningPlan = winningPlan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery{" +
+                "time='" + time + '\'' +
+                ", shape='" + shape + '\'' +
+                ", query='" + query + '\'' +
+                ", durationMs=" + durationMs +
+                ", resultCount=" + resultCount +
+                '}';
+    }
+
+}
@@ -0,0 +1,130 @@
+package io.tradeledger.searchfacade.metrics;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last slow MongoDB searches, with their winning plans, and logs them.
+ *
+ * <p>Searches taking at least the configured threshold are kept in a ring buffer
+ * of the configured size, listed at {@code /actuator/slowqueries}, and logged right
+ * away. Each one is then explained on a background thread, so that the request is
+ * not held up any further. When the background thread falls behind, slow queries
+ * are still kept and logged, but not explained until it catches up.
+ */
+@Component
+public class SlowQueryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final int MAX_PENDING_EXPLAINS = 16;
+
+    private final MongoOperations operations;
+    private final long thresholdNanos;
+    private final int size;
+    private final Deque<SlowQuery> slowQueries;
+    private final ExecutorService explainer;
+
+    public SlowQueryLog(MongoOperations operations,
+                        @Value("${searchfacade.slow-query.threshold-ms}") long thresholdMs,
+                        @Value("${searchfacade.slow-query.log-size}") int size) {
+        this.operations = operations;
+        this.thresholdNanos = thresholdMs < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.size = size;
+        this.slowQueries = new ArrayDeque<>(size);
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_EXPLAINS), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explainer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Returns a log that keeps nothing, e.g. for repositories set up outside the application context.
+     */
+    public static SlowQueryLog disabled() {
+        return new SlowQueryLog(null, -1, 0);
+    }
+
+    /**
+     * Records a search if it took at least the threshold.
+     *
+     * @param filters the filters searched for
+     * @param query the query that was run
+     * @param startedAt when the search started, as of {@link System#nanoTime()}
+     * @param resultCount the number of documents returned
+     */
+    public void record(Filter[] filters, Query query, long startedAt, int resultCount) {
+        long elapsed = System.nanoTime() - startedAt;
+        if (elapsed < thresholdNanos || size <= 0) {
+            return;
+        }
+
+        SlowQuery slowQuery = new SlowQuery(Instant.now().toString(), QueryPlanCache.getShape(filters),
+                query.toString(), TimeUnit.NANOSECONDS.toMillis(elapsed), resultCount);
+        synchronized (slowQueries) {
+            if (slowQueries.size() == size) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        }
+        log.warn("Slow query: {} ms, {} results, shape {}, {}", slowQuery.getDurationMs(),
+                slowQuery.getResultCount(), slowQuery.getShape(), slowQuery.getQuery());
+
+        // The caller may still change the query, e.g. to page on, by the time it is explained
+        Query copy = QueryExplainer.copy(query);
+        explainer.execute(() -> explain(slowQuery, copy));
+    }
+
+    /**
+     * Returns the slow queries kept, most recent first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> result;
+        synchronized (slowQueries) {
+            result = new ArrayList<>(slowQueries);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @PreDestroy
+    public void stop() {
+        explainer.shutdownNow();
+    }
+
+    private void explain(SlowQuery slowQuery, Query query) {
+        try {
+            Document queryPlanner = QueryExplainer.explain(operations, query, "queryPlanner")
+                    .get("queryPlanner", Document.class);
+            slowQuery.setWinningPlan(queryPlanner == null ? null : queryPlanner.get("winningPlan", Document.class));
+        } catch (RuntimeException ex) {
+            log.debug("Cannot explain slow query {}", slowQuery.getQuery(), ex);
+            return;
+        }
+
+        if (slowQuery.getWinningPlan() != null) {
+            log.info("Slow query {} winning plan: {}", slowQuery.getQuery(), slowQuery.getWinningPlan().toJson());
+        }
+    }
+
+}
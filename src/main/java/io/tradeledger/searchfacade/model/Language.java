@@ -1,13 +1,19 @@
 package io.tradeledger.searchfacade.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
 
+@Document(collection = "language")
+@CompoundIndex(name = "language_version", def = "{'language': 1, 'version': 1}")
 public final class Language {
 
     @Id
     private final String id;
 
     private final String language;
+    @Indexed
     private final Integer version;
     private final Boolean isJvmBased;
 
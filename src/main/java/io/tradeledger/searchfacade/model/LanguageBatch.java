@@ -0,0 +1,38 @@
+package io.tradeledger.searchfacade.model;
+
+import java.util.List;
+
+/**
+ * The result of looking up many languages by ID at once.
+ *
+ * <p>Languages are listed in the order their IDs were requested. IDs for which
+ * a single lookup would fail with a {@code LanguageNotFoundException} are listed
+ * as missing instead.
+ */
+public final class LanguageBatch {
+
+    private final List<Language> languages;
+    private final List<String> missing;
+
+    public LanguageBatch(List<Language> languages, List<String> missing) {
+        this.languages = languages;
+        this.missing = missing;
+    }
+
+    public List<Language> getLanguages() {
+        return languages;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    @Override
+    public String toString() {
+        return "LanguageBatch{" +
+                "languages=" + languages +
+                ", missing=" + missing +
+                '}';
+    }
+
+}
@@ -0,0 +1,52 @@
+package io.tradeledger.searchfacade.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The summary of the languages sharing one value of the grouping attribute.
+ *
+ * <p>The minimum and maximum are those of the summarised attribute, if one was
+ * requested, and are otherwise null and omitted from the response.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class LanguageGroup {
+
+    private final Object value;
+    private final long count;
+    private final Object min;
+    private final Object max;
+
+    public LanguageGroup(Object value, long count, Object min, Object max) {
+        this.value = value;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LanguageGroup{" +
+                "value=" + value +
+                ", count=" + count +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+
+}
@@ -0,0 +1,36 @@
+package io.tradeledger.searchfacade.replica;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes an attribute with few distinct values for equality, as one bitmap of
+ * rows per value.
+ *
+ * <p>Values are matched by type as well, so a boolean only matches rows holding
+ * that boolean and not its string form.
+ */
+public final class BitmapIndex implements LocalIndex {
+
+    private final Map<Object, PostingList> postings = new HashMap<>();
+
+    /**
+     * Indexes the given values.
+     *
+     * @param rows the rows holding each value
+     */
+    public BitmapIndex(Map<?, BitSet> rows) {
+        rows.forEach((value, valueRows) -> postings.put(value, PostingList.of(valueRows)));
+    }
+
+    @Override
+    public PostingList find(String operator, Object value) {
+        if (!"$eq".equals(operator)) {
+            return null;
+        }
+
+        return postings.getOrDefault(value, PostingList.EMPTY);
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.tradeledger.searchfacade.replica;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes a string attribute for equality, with one posting list per distinct value.
+ */
+public final class HashIndex implements LocalIndex {
+
+    private final Map<String, int[]> postings;
+
+    /**
+     * Indexes the given column.
+     *
+     * @param values the value of each row, or null where it is missing
+     * @param rowCount the number of rows
+     */
+    public HashIndex(String[] values, int rowCount) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (values[row] != null) {
+                rows.computeIfAbsent(values[row], value -> new ArrayList<>()).add(row);
+            }
+        }
+
+        this.postings = new HashMap<>(rows.size() * 2);
+        rows.forEach((value, valueRows) -> postings.put(value,
+                valueRows.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    @Override
+    public PostingList find(String operator, Object value) {
+        if (!"$eq".equals(operator)) {
+            return null;
+        }
+
+        int[] rows = postings.get(value);
+        return rows == null ? PostingList.EMPTY : PostingList.of(rows);
+    }
+
+}
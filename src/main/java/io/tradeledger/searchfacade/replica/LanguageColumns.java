@@ -0,0 +1,604 @@
+package io.tradeledger.searchfacade.replica;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.ContinuationToken;
+import io.tradeledger.searchfacade.repository.Projection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, column-oriented copy of the language collection.
+ *
+ * <p>Each attribute is held in its own array, indexed by row: versions as an
+ * {@code int[]}, and {@code isJvmBased} as bitsets. Filters are evaluated through
+ * a {@link LocalIndex} per attribute, built on first use, with the same results
+ * MongoDB would give. Filters that cannot be evaluated exactly, e.g. on other
+ * attributes, are reported as unsupported rather than approximated.
+ *
+ * <p>Each filter is evaluated into a compressed bitmap of matching rows, and the
+ * bitmaps of the most frequently used filters are cached with the copy. Searches
+ * and counts then take the intersection of the bitmaps of their filters.
+ *
+ * <p>Updates return a new copy, so readers never see a partially applied change.
+ */
+public final class LanguageColumns {
+
+    static final String LANGUAGE = "language";
+    static final String VERSION = "version";
+    static final String JVM_BASED = "isJvmBased";
+
+    private static final String EQUALS = "$eq";
+    private static final String GREATER_THAN_EQUALS = "$gte";
+    private static final String LOWER_THAN_EQUALS = "$lte";
+    private static final List<String> OPERATORS = Arrays.asList(EQUALS, GREATER_THAN_EQUALS, LOWER_THAN_EQUALS);
+
+    private final int size;
+    private final String[] ids;
+    private final String[] languages;
+    private final int[] versions;
+    private final BitSet hasVersion;
+    private final BitSet jvmBased;
+    // isJvmBased is stored either as a boolean or, as in the sample data, as a string
+    private final BitSet jvmBasedBooleans;
+    private final BitSet jvmBasedStrings;
+    // All IDs are ObjectIds, so their hex strings sort as the IDs do
+    private final boolean objectIds;
+    // All values fit the columns; if not, the copy is not used
+    private final boolean regular;
+    private final Map<String, Integer> rows;
+    private final int bitmapCacheSize;
+    // Built on first use, as most copies are replaced by the next change before being searched
+    private volatile Map<String, LocalIndex> indexes;
+    private volatile Cache<List<Object>, RoaringBitmap> bitmaps;
+
+    private LanguageColumns(Builder builder) {
+        this.size = builder.size;
+        this.ids = builder.ids;
+        this.languages = builder.languages;
+        this.versions = builder.versions;
+        this.hasVersion = builder.hasVersion;
+        this.jvmBased = builder.jvmBased;
+        this.jvmBasedBooleans = builder.jvmBasedBooleans;
+        this.jvmBasedStrings = builder.jvmBasedStrings;
+        this.objectIds = builder.objectIds;
+        this.regular = builder.regular;
+        this.bitmapCacheSize = builder.bitmapCacheSize;
+        this.rows = new HashMap<>(size * 2);
+        for (int row = 0; row < size; row++) {
+            rows.put(ids[row], row);
+        }
+    }
+
+    /**
+     * Creates a copy of the given raw documents.
+     *
+     * @param documents the documents as stored
+     * @param bitmapCacheSize the number of filters whose bitmaps are cached, carried over to updated copies
+     * @return the columns
+     */
+    public static LanguageColumns of(List<Document> documents, int bitmapCacheSize) {
+        Builder builder = new Builder(documents.size());
+        builder.bitmapCacheSize = bitmapCacheSize;
+        documents.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Returns a copy with the given document inserted, or replacing the one with the same ID.
+     *
+     * @param document the document as stored
+     * @return the updated columns
+     */
+    public LanguageColumns withDocument(Document document) {
+        return withChanges(Collections.singletonMap(idOf(document.get(ContinuationToken.ID)), document));
+    }
+
+    /**
+     * Returns a copy without the document with the given ID.
+     *
+     * @param id the ID
+     * @return the updated columns
+     */
+    public LanguageColumns withoutDocument(String id) {
+        return withChanges(Collections.singletonMap(id, null));
+    }
+
+    /**
+     * Returns a copy with a batch of changes applied in a single pass over the rows,
+     * so that applying many changes costs about as much as applying one.
+     *
+     * @param changes the latest state of each changed document by ID, as returned by
+     *                {@link #idOf}: the document as stored, or null if it was deleted
+     * @return the updated columns, or these columns if nothing changed
+     */
+    public LanguageColumns withChanges(Map<String, Document> changes) {
+        int updatedSize = size;
+        for (Map.Entry<String, Document> change : changes.entrySet()) {
+            boolean present = rows.containsKey(change.getKey());
+            if (change.getValue() != null && !present) {
+                updatedSize++;
+            } else if (change.getValue() == null && present) {
+                updatedSize--;
+            }
+        }
+        if (updatedSize == size && changes.values().stream().allMatch(Objects::isNull)) {
+            // Only deletions of documents not in the copy
+            return this;
+        }
+
+        Builder builder = new Builder(updatedSize);
+        builder.inherit(this);
+
+        // Changed rows keep their position, and new documents are appended in order
+        for (int row = 0; row < size; row++) {
+            if (!changes.containsKey(ids[row])) {
+                builder.copy(this, row);
+            } else if (changes.get(ids[row]) != null) {
+                builder.add(changes.get(ids[row]));
+            }
+        }
+        for (Map.Entry<String, Document> change : changes.entrySet()) {
+            if (change.getValue() != null && !rows.containsKey(change.getKey())) {
+                builder.add(change.getValue());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Returns the ID as held in the columns, i.e. the hex string of an ObjectId.
+     *
+     * @param id the stored ID
+     * @return the ID string
+     */
+    public static String idOf(Object id) {
+        return id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether every stored value fits the columns. If not, results read from
+     * the columns could differ from MongoDB's and the copy must not be used.
+     */
+    public boolean isRegular() {
+        return regular;
+    }
+
+    /**
+     * Evaluates the conjunction of the given filters by intersecting the posting
+     * lists of their conditions, smallest first.
+     *
+     * @param filters the filters
+     * @return the matching rows in ascending order, or null if a filter cannot be evaluated exactly
+     */
+    public int[] find(Filter[] filters) {
+        List<PostingList> postings = new ArrayList<>();
+
+        for (Filter filter : filters) {
+            Object queryValue = filter.getQueryValue();
+            Map<String, Object> conditions = queryValue instanceof Document
+                    ? (Document) queryValue
+                    : new Document(EQUALS, queryValue);
+
+            for (Map.Entry<String, Object> condition : conditions.entrySet()) {
+                PostingList posting = find(filter.getAttribute(), condition.getKey(), condition.getValue());
+                if (posting == null) {
+                    return null;
+                }
+                postings.add(posting);
+            }
+        }
+
+        if (postings.isEmpty()) {
+            return IntStream.range(0, size).toArray();
+        }
+
+        postings.sort(Comparator.comparingInt(PostingList::size));
+
+        int[] matches = postings.get(0).toArray();
+        int count = matches.length;
+        if (postings.size() > 1) {
+            // The first posting list may be shared, so it is copied rather than filtered in place
+            int[] retained = new int[count];
+            count = 0;
+            for (int row : matches) {
+                if (containsAll(postings, row)) {
+                    retained[count++] = row;
+                }
+            }
+            matches = retained;
+        }
+
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Evaluates the conjunction of the given filters by intersecting their bitmaps,
+     * smallest first.
+     *
+     * @param filters the filters
+     * @return the matching rows, or null if a filter cannot be evaluated exactly; must not be modified
+     */
+    public RoaringBitmap match(Filter[] filters) {
+        List<RoaringBitmap> matches = matchEach(filters);
+        if (matches == null) {
+            return null;
+        }
+        if (matches.isEmpty()) {
+            RoaringBitmap all = new RoaringBitmap();
+            all.add(0L, (long) size);
+            return all;
+        }
+
+        RoaringBitmap intersection = matches.get(0);
+        for (int i = 1; i < matches.size() && !intersection.isEmpty(); i++) {
+            intersection = RoaringBitmap.and(intersection, matches.get(i));
+        }
+        return intersection;
+    }
+
+    /**
+     * Counts the rows matching all of the given filters, without reading them.
+     *
+     * @param filters the filters
+     * @return the number of matching rows, or empty if a filter cannot be evaluated exactly
+     */
+    public OptionalInt count(Filter[] filters) {
+        List<RoaringBitmap> matches = matchEach(filters);
+        if (matches == null) {
+            return OptionalInt.empty();
+        }
+
+        switch (matches.size()) {
+            case 0:
+                return OptionalInt.of(size);
+            case 1:
+                return OptionalInt.of(matches.get(0).getCardinality());
+            case 2:
+                // Counted without building the intersection
+                return OptionalInt.of(RoaringBitmap.andCardinality(matches.get(0), matches.get(1)));
+            default:
+                return OptionalInt.of(match(filters).getCardinality());
+        }
+    }
+
+    /**
+     * Returns whether results can be sorted by the given attribute as MongoDB sorts them.
+     */
+    public boolean isSortable(String sort) {
+        switch (sort) {
+            case ContinuationToken.ID:
+            case LANGUAGE:
+            case VERSION:
+                // Ties are broken by ID
+                return objectIds;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compares two rows in ascending order of the sort attribute, then of ID.
+     */
+    public int compare(int row, int other, String sort) {
+        return compareTo(row, sort, getSortValue(other, sort), ids[other]);
+    }
+
+    /**
+     * Compares a row with a position in ascending order of the sort attribute, then of ID.
+     *
+     * @param row the row
+     * @param sort the sort attribute
+     * @param value the sort value of the position
+     * @param id the ID of the position
+     * @return a negative number, zero or a positive number if the row is before, at or after the position
+     */
+    public int compareTo(int row, String sort, Object value, String id) {
+        int comparison = compareValues(getSortValue(row, sort), value);
+        return comparison != 0 ? comparison : ids[row].compareTo(id);
+    }
+
+    /**
+     * Returns the value of the sort attribute in the given row, or null if it is missing.
+     */
+    public Object getSortValue(int row, String sort) {
+        switch (sort) {
+            case LANGUAGE:
+                return languages[row];
+            case VERSION:
+                return hasVersion.get(row) ? versions[row] : null;
+            default:
+                return null;
+        }
+    }
+
+    public String getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Reads a row as MongoDB would have returned it for the given projection.
+     *
+     * @param row the row
+     * @param projection the fields to read
+     * @return the language
+     */
+    public Language get(int row, Projection projection) {
+        boolean all = projection.isAll();
+        boolean hasJvmBased = jvmBasedBooleans.get(row) || jvmBasedStrings.get(row);
+
+        return new Language(
+                all || projection.getFields().contains(ContinuationToken.ID) ? ids[row] : null,
+                all || projection.getFields().contains(LANGUAGE) ? languages[row] : null,
+                (all || projection.getFields().contains(VERSION)) && hasVersion.get(row) ? versions[row] : null,
+                (all || projection.getFields().contains(JVM_BASED)) && hasJvmBased ? jvmBased.get(row) : null);
+    }
+
+    /**
+     * Returns the bitmap of each filter, smallest first, or null if a filter cannot be evaluated exactly.
+     */
+    private List<RoaringBitmap> matchEach(Filter[] filters) {
+        List<RoaringBitmap> matches = new ArrayList<>(filters.length);
+        for (Filter filter : filters) {
+            RoaringBitmap filterMatches = match(filter);
+            if (filterMatches == null) {
+                return null;
+            }
+            matches.add(filterMatches);
+        }
+
+        matches.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+        return matches;
+    }
+
+    private RoaringBitmap match(Filter filter) {
+        // Unsupported filters are not cached, and are cheap to report again
+        return getBitmaps().get(Arrays.asList(filter.getAttribute(), filter.getQueryValue()), key -> {
+            int[] rows = find(new Filter[]{filter});
+            if (rows == null) {
+                return null;
+            }
+
+            RoaringBitmap filterMatches = RoaringBitmap.bitmapOf(rows);
+            filterMatches.runOptimize();
+            return filterMatches;
+        });
+    }
+
+    private Cache<List<Object>, RoaringBitmap> getBitmaps() {
+        Cache<List<Object>, RoaringBitmap> cache = bitmaps;
+        if (cache == null) {
+            synchronized (this) {
+                cache = bitmaps;
+                if (cache == null) {
+                    // Admission by frequency keeps the bitmaps of frequently used filters
+                    cache = Caffeine.newBuilder().maximumSize(bitmapCacheSize).build();
+                    bitmaps = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static boolean containsAll(List<PostingList> postings, int row) {
+        for (int i = 1; i < postings.size(); i++) {
+            if (!postings.get(i).contains(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PostingList find(String attribute, String operator, Object value) {
+        if (value == null || !OPERATORS.contains(operator)) {
+            return null;
+        }
+
+        LocalIndex index = getIndexes().get(attribute);
+        PostingList posting = index == null ? null : index.find(operator, value);
+        if (posting != null || !LANGUAGE.equals(attribute)) {
+            return posting;
+        }
+
+        // Ranges on language are rare enough to be scanned
+        if (!(value instanceof String)) {
+            return PostingList.EMPTY;
+        }
+        return PostingList.scan(size, row ->
+                languages[row] != null && test(compareStrings(languages[row], (String) value), operator));
+    }
+
+    private Map<String, LocalIndex> getIndexes() {
+        Map<String, LocalIndex> built = indexes;
+        if (built == null) {
+            // Copies are immutable, so a race at worst builds the same indexes twice
+            built = new HashMap<>();
+            built.put(LANGUAGE, new HashIndex(languages, size));
+            built.put(VERSION, new SortedIntIndex(versions, hasVersion));
+            built.put(JVM_BASED, new BitmapIndex(getJvmBasedRows()));
+            indexes = built;
+        }
+        return built;
+    }
+
+    /**
+     * Returns the rows holding each value of isJvmBased, keeping booleans apart from strings.
+     */
+    private Map<Object, BitSet> getJvmBasedRows() {
+        Map<Object, BitSet> jvmBasedRows = new HashMap<>();
+        jvmBasedRows.put(Boolean.TRUE, intersect(jvmBasedBooleans, jvmBased, true));
+        jvmBasedRows.put(Boolean.FALSE, intersect(jvmBasedBooleans, jvmBased, false));
+        jvmBasedRows.put("true", intersect(jvmBasedStrings, jvmBased, true));
+        jvmBasedRows.put("false", intersect(jvmBasedStrings, jvmBased, false));
+        return jvmBasedRows;
+    }
+
+    private static BitSet intersect(BitSet rows, BitSet values, boolean value) {
+        BitSet matches = (BitSet) rows.clone();
+        if (value) {
+            matches.and(values);
+        } else {
+            matches.andNot(values);
+        }
+        return matches;
+    }
+
+    private static boolean test(int comparison, String operator) {
+        switch (operator) {
+            case EQUALS:
+                return comparison == 0;
+            case GREATER_THAN_EQUALS:
+                return comparison >= 0;
+            default:
+                return comparison <= 0;
+        }
+    }
+
+    /**
+     * Compares values as MongoDB sorts them: missing values first, then numbers, then strings.
+     */
+    private static int compareValues(Object value, Object other) {
+        if (value == null || other == null) {
+            return value == null ? (other == null ? 0 : -1) : 1;
+        }
+        if (value instanceof Number && other instanceof Number) {
+            return compareNumbers((Number) value, (Number) other);
+        }
+        if (value instanceof String && other instanceof String) {
+            return compareStrings((String) value, (String) other);
+        }
+        return value instanceof Number ? -1 : 1;
+    }
+
+    private static int compareNumbers(Number value, Number other) {
+        if (value instanceof Double || value instanceof Float || other instanceof Double || other instanceof Float) {
+            return Double.compare(value.doubleValue(), other.doubleValue());
+        }
+        return Long.compare(value.longValue(), other.longValue());
+    }
+
+    /**
+     * Compares strings by code point, which is the order of their UTF-8 bytes as compared by MongoDB.
+     */
+    private static int compareStrings(String value, String other) {
+        int i = 0;
+        int j = 0;
+        while (i < value.length() && j < other.length()) {
+            int codePoint = value.codePointAt(i);
+            int otherCodePoint = other.codePointAt(j);
+            if (codePoint != otherCodePoint) {
+                return Integer.compare(codePoint, otherCodePoint);
+            }
+            i += Character.charCount(codePoint);
+            j += Character.charCount(otherCodePoint);
+        }
+        return Integer.compare(value.length() - i, other.length() - j);
+    }
+
+    private static final class Builder {
+
+        private final String[] ids;
+        private final String[] languages;
+        private final int[] versions;
+        private final BitSet hasVersion = new BitSet();
+        private final BitSet jvmBased = new BitSet();
+        private final BitSet jvmBasedBooleans = new BitSet();
+        private final BitSet jvmBasedStrings = new BitSet();
+        private boolean objectIds = true;
+        private boolean regular = true;
+        private int bitmapCacheSize;
+        private int size;
+
+        private Builder(int capacity) {
+            this.ids = new String[capacity];
+            this.languages = new String[capacity];
+            this.versions = new int[capacity];
+        }
+
+        private void inherit(LanguageColumns columns) {
+            bitmapCacheSize = columns.bitmapCacheSize;
+            objectIds = columns.objectIds;
+            regular = columns.regular;
+        }
+
+        private void copy(LanguageColumns columns, int row) {
+            ids[size] = columns.ids[row];
+            languages[size] = columns.languages[row];
+            versions[size] = columns.versions[row];
+            hasVersion.set(size, columns.hasVersion.get(row));
+            jvmBased.set(size, columns.jvmBased.get(row));
+            jvmBasedBooleans.set(size, columns.jvmBasedBooleans.get(row));
+            jvmBasedStrings.set(size, columns.jvmBasedStrings.get(row));
+            size++;
+        }
+
+        private void add(Document document) {
+            Object id = document.get(ContinuationToken.ID);
+            ids[size] = idOf(id);
+            objectIds &= id instanceof ObjectId;
+
+            Object language = document.get(LANGUAGE);
+            if (language instanceof String) {
+                languages[size] = (String) language;
+            } else {
+                regular &= language == null;
+            }
+
+            Object version = document.get(VERSION);
+            if (version instanceof Integer) {
+                versions[size] = (Integer) version;
+                hasVersion.set(size);
+            } else {
+                regular &= version == null;
+            }
+
+            Object isJvmBased = document.get(JVM_BASED);
+            if (isJvmBased instanceof Boolean) {
+                jvmBased.set(size, (Boolean) isJvmBased);
+                jvmBasedBooleans.set(size);
+            } else if ("true".equals(isJvmBased) || "false".equals(isJvmBased)) {
+                jvmBased.set(size, Boolean.valueOf((String) isJvmBased));
+                jvmBasedStrings.set(size);
+            } else {
+                regular &= isJvmBased == null;
+            }
+
+            size++;
+        }
+
+        private LanguageColumns build() {
+            return new LanguageColumns(this);
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "LanguageColumns{" +
+                "size=" + size +
+                ", objectIds=" + objectIds +
+                ", regular=" + regular +
+                '}';
+    }
+
+}
@@ -0,0 +1,337 @@
+package io.tradeledger.searchfacade.replica;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.ContinuationToken;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * An optional in-process copy of the language collection that searches can be
+ * answered from without a round trip to MongoDB.
+ *
+ * <p>When enabled, the collection is loaded into {@link LanguageColumns} on startup
+ * and then kept current by following a change stream. The copy is only used while
+ * it is known to be no more than the configured staleness behind the database, and
+ * only for searches it can answer exactly; otherwise callers fall back to MongoDB.
+ *
+ * <p>Change streams need a replica set. Against a standalone server, the copy is
+ * instead reloaded in full every retry interval, and is used for the staleness
+ * bound after each reload.
+ *
+ * <p>Each copy is rebuilt in full, so changes are not applied one by one: the
+ * changes available from the stream are drained, up to a batch at a time, and
+ * applied together in a single rebuild. A bulk write of many documents thus costs
+ * a few rebuilds rather than one per document.
+ */
+@Component
+public class LanguageReplica {
+
+    private static final Logger log = LoggerFactory.getLogger(LanguageReplica.class);
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final MongoOperations operations;
+    private final boolean enabled;
+    private final long maxStalenessNanos;
+    private final long retryIntervalMs;
+    private final int bitmapCacheSize;
+    private volatile LanguageColumns columns;
+    // When the copy was last known to be current, as of System.nanoTime()
+    private volatile long syncedAt;
+    private volatile boolean running;
+    // Loads and applied changes so far, and whether a change stream is being followed
+    private volatile long changeCount;
+    private volatile long rebuildCount;
+    private volatile boolean following;
+    private boolean changeStreamsUnavailable;
+    private Thread follower;
+
+    public LanguageReplica(MongoOperations operations,
+                           @Value("${searchfacade.replica.enabled}") boolean enabled,
+                           @Value("${searchfacade.replica.max-staleness-ms}") long maxStalenessMs,
+                           @Value("${searchfacade.replica.retry-interval-ms}") long retryIntervalMs,
+                           @Value("${searchfacade.replica.bitmap-cache-size}") int bitmapCacheSize) {
+        this.operations = operations;
+        this.enabled = enabled;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.retryIntervalMs = retryIntervalMs;
+        this.bitmapCacheSize = bitmapCacheSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        running = true;
+        follower = new Thread(this::follow, "language-replica");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (follower != null) {
+            follower.interrupt();
+        }
+    }
+
+    /**
+     * Returns the current copy, if it is within the staleness bound and can be used.
+     */
+    public Optional<LanguageColumns> getColumns() {
+        LanguageColumns current = columns;
+        if (current == null || !current.isRegular() || System.nanoTime() - syncedAt > maxStalenessNanos) {
+            return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    /**
+     * Returns the number of times the copy has been loaded or changed. Every change
+     * to the collection seen by the copy increases the count.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Returns the number of times the copy has been loaded or rebuilt with a batch of changes.
+     */
+    public long getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Returns whether the copy follows a change stream and is within the staleness
+     * bound, so that any change to the collection is reflected in the change count
+     * within that bound.
+     */
+    public boolean isFollowingChanges() {
+        return following && System.nanoTime() - syncedAt <= maxStalenessNanos;
+    }
+
+    /**
+     * Searches the copy.
+     *
+     * @param filters the filters to apply
+     * @param projection the fields to read
+     * @return the results in no particular order, or empty if the search must go to MongoDB
+     */
+    public Optional<List<Language>> search(Filter[] filters, Projection projection) {
+        return getColumns().flatMap(current -> {
+            RoaringBitmap matches = current.match(filters);
+            if (matches == null) {
+                return Optional.empty();
+            }
+
+            List<Language> languages = new ArrayList<>(matches.getCardinality());
+            for (IntIterator rows = matches.getIntIterator(); rows.hasNext(); ) {
+                languages.add(current.get(rows.next(), projection));
+            }
+            return Optional.of(languages);
+        });
+    }
+
+    /**
+     * Returns a single page of results from the copy, sorted and paged as by MongoDB.
+     *
+     * @param filters the filters to apply
+     * @param pageRequest the sort attribute, position and size of the page
+     * @return the page, or empty if the search must go to MongoDB
+     */
+    public Optional<SearchPage<Language>> search(Filter[] filters, SearchPageRequest pageRequest) {
+        String sort = pageRequest.getSort();
+
+        return getColumns().filter(current -> current.isSortable(sort)).flatMap(current -> {
+            RoaringBitmap matches = current.match(filters);
+            if (matches == null) {
+                return Optional.empty();
+            }
+
+            ContinuationToken token = pageRequest.getToken();
+            List<Integer> rows = new ArrayList<>();
+            for (IntIterator matchingRows = matches.getIntIterator(); matchingRows.hasNext(); ) {
+                int row = matchingRows.next();
+                if (token == null || current.compareTo(row, sort, token.getValue(), token.getId()) > 0) {
+                    rows.add(row);
+                }
+            }
+            rows.sort((row, other) -> current.compare(row, other, sort));
+
+            int size = pageRequest.getSize();
+            String nextPageToken = null;
+            if (rows.size() > size) {
+                int last = rows.get(size - 1);
+                nextPageToken = new ContinuationToken(sort, current.getSortValue(last, sort), current.getId(last))
+                        .encode();
+                rows = rows.subList(0, size);
+            }
+
+            return Optional.of(new SearchPage<>(rows.stream()
+                    .map(row -> current.get(row, pageRequest.getProjection()))
+                    .collect(Collectors.toList()), nextPageToken));
+        });
+    }
+
+    /**
+     * Counts the search results in the copy, without reading them.
+     *
+     * @param filters the filters to apply
+     * @return the exact number of results, or empty if the count must go to MongoDB
+     */
+    public Optional<Long> count(Filter[] filters) {
+        return getColumns().flatMap(current -> {
+            OptionalInt count = current.count(filters);
+            return count.isPresent() ? Optional.of((long) count.getAsInt()) : Optional.empty();
+        });
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                sync();
+            } catch (RuntimeException ex) {
+                if (running) {
+                    log.warn("Language replica out of sync, searching MongoDB until it recovers: {}", ex.getMessage());
+                }
+            }
+
+            try {
+                Thread.sleep(retryIntervalMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void sync() {
+        MongoCollection<Document> collection = operations.getCollection(operations.getCollectionName(Language.class));
+        MongoCursor<ChangeStreamDocument<Document>> changes;
+
+        try {
+            // Open the stream before loading, so that no change made during the load is missed
+            changes = collection.watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(Math.max(1, TimeUnit.NANOSECONDS.toMillis(maxStalenessNanos) / 2),
+                            TimeUnit.MILLISECONDS)
+                    .iterator();
+        } catch (MongoException ex) {
+            if (!changeStreamsUnavailable) {
+                changeStreamsUnavailable = true;
+                log.warn("Change streams are not available, reloading the language replica every {} ms: {}",
+                        retryIntervalMs, ex.getMessage());
+            }
+            load(collection);
+            return;
+        }
+
+        try (MongoCursor<ChangeStreamDocument<Document>> cursor = changes) {
+            load(collection);
+            following = true;
+
+            // The latest state of each changed document, null once deleted
+            Map<String, Document> batch = new LinkedHashMap<>();
+            int batchSize = 0;
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null) {
+                    add(batch, change);
+                    batchSize++;
+                }
+
+                if (change == null || batchSize == MAX_BATCH_SIZE) {
+                    apply(batch, batchSize);
+                    batch.clear();
+                    batchSize = 0;
+                }
+                if (change == null) {
+                    // Caught up with the database
+                    syncedAt = System.nanoTime();
+                }
+            }
+        } finally {
+            following = false;
+        }
+    }
+
+    private void load(MongoCollection<Document> collection) {
+        long startedAt = System.nanoTime();
+        LanguageColumns loaded = LanguageColumns.of(collection.find().into(new ArrayList<>()), bitmapCacheSize);
+
+        if (!loaded.isRegular()) {
+            log.warn("Language replica disabled until the next reload: some stored values do not fit its columns");
+        }
+
+        columns = loaded;
+        syncedAt = startedAt;
+        changeCount++;
+        rebuildCount++;
+        log.debug("Loaded {} languages into the replica", loaded.size());
+    }
+
+    private static void add(Map<String, Document> batch, ChangeStreamDocument<Document> change) {
+        String id = idOf(change.getDocumentKey().get(ContinuationToken.ID));
+        switch (change.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+                // The document may have been deleted before the update was looked up
+                batch.put(id, change.getFullDocument());
+                break;
+            case DELETE:
+                batch.put(id, null);
+                break;
+            default:
+                throw new IllegalStateException("Change stream invalidated");
+        }
+    }
+
+    private void apply(Map<String, Document> batch, int batchSize) {
+        if (batchSize == 0) {
+            return;
+        }
+
+        columns = columns.withChanges(batch);
+        changeCount += batchSize;
+        rebuildCount++;
+    }
+
+    private static String idOf(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+}
@@ -0,0 +1,20 @@
+package io.tradeledger.searchfacade.replica;
+
+/**
+ * An in-process index over one attribute of {@link LanguageColumns}.
+ *
+ * <p>Conditions use MongoDB's query operators, e.g. {@code $eq}, and match values
+ * of another type than the indexed one as MongoDB would, i.e. not at all.
+ */
+public interface LocalIndex {
+
+    /**
+     * Looks up the rows matching a condition on the indexed attribute.
+     *
+     * @param operator the query operator
+     * @param value the value to compare with
+     * @return the matching rows, or null if this index cannot evaluate the condition
+     */
+    PostingList find(String operator, Object value);
+
+}
@@ -0,0 +1,100 @@
+package io.tradeledger.searchfacade.replica;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * The rows matching a single condition.
+ *
+ * <p>Conjunctions are evaluated by reading the smallest posting list in full and
+ * probing the others for each of its rows, so only {@link #size()} needs to be
+ * cheap for every posting list.
+ */
+public interface PostingList {
+
+    PostingList EMPTY = of(new int[0]);
+
+    /**
+     * Returns the number of matching rows, or an upper bound if it is not known
+     * without evaluating the condition.
+     */
+    int size();
+
+    /**
+     * Returns the matching rows in ascending order.
+     */
+    int[] toArray();
+
+    boolean contains(int row);
+
+    /**
+     * Returns a posting list of the given rows, which must be in ascending order.
+     */
+    static PostingList of(int[] rows) {
+        return new PostingList() {
+            @Override
+            public int size() {
+                return rows.length;
+            }
+
+            @Override
+            public int[] toArray() {
+                return rows;
+            }
+
+            @Override
+            public boolean contains(int row) {
+                return Arrays.binarySearch(rows, row) >= 0;
+            }
+        };
+    }
+
+    static PostingList of(BitSet rows) {
+        int size = rows.cardinality();
+        return new PostingList() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public int[] toArray() {
+                return rows.stream().toArray();
+            }
+
+            @Override
+            public boolean contains(int row) {
+                return rows.get(row);
+            }
+        };
+    }
+
+    /**
+     * Returns a posting list evaluated row by row, for conditions without an index.
+     *
+     * @param rowCount the number of rows
+     * @param matches tests whether a row matches
+     * @return the posting list, with the row count as its size
+     */
+    static PostingList scan(int rowCount, IntPredicate matches) {
+        return new PostingList() {
+            @Override
+            public int size() {
+                return rowCount;
+            }
+
+            @Override
+            public int[] toArray() {
+                return IntStream.range(0, rowCount).filter(matches).toArray();
+            }
+
+            @Override
+            public boolean contains(int row) {
+                return matches.test(row);
+            }
+        };
+    }
+
+}
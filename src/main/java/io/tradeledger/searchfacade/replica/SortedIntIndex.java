@@ -0,0 +1,139 @@
+package io.tradeledger.searchfacade.replica;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Indexes an integer attribute for equality and ranges, as rows sorted by value.
+ *
+ * <p>Values and rows are held in parallel primitive arrays, so a range is found
+ * by two binary searches and its size is known without reading it.
+ */
+public final class SortedIntIndex implements LocalIndex {
+
+    private final int[] values;
+    private final BitSet present;
+    private final int[] sortedValues;
+    private final int[] sortedRows;
+
+    /**
+     * Indexes the given column.
+     *
+     * @param values the value of each row
+     * @param present the rows that have a value
+     */
+    public SortedIntIndex(int[] values, BitSet present) {
+        // Sorting value and row packed into a long orders rows by value, then by row
+        long[] entries = present.stream()
+                .mapToLong(row -> (long) values[row] << 32 | row)
+                .toArray();
+        Arrays.sort(entries);
+
+        this.values = values;
+        this.present = present;
+        this.sortedValues = new int[entries.length];
+        this.sortedRows = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            sortedValues[i] = (int) (entries[i] >> 32);
+            sortedRows[i] = (int) entries[i];
+        }
+    }
+
+    @Override
+    public PostingList find(String operator, Object value) {
+        if (!(value instanceof Number)) {
+            // Values of another type never match, as in MongoDB
+            return PostingList.EMPTY;
+        }
+
+        long min = Long.MIN_VALUE;
+        long max = Long.MAX_VALUE;
+        switch (operator) {
+            case "$eq":
+                min = ceil((Number) value);
+                max = floor((Number) value);
+                break;
+            case "$gte":
+                min = ceil((Number) value);
+                break;
+            case "$lte":
+                max = floor((Number) value);
+                break;
+            default:
+                return null;
+        }
+
+        if (isNaN((Number) value) || min > Integer.MAX_VALUE || max < Integer.MIN_VALUE || min > max) {
+            return PostingList.EMPTY;
+        }
+
+        return new Range((int) Math.max(min, Integer.MIN_VALUE), (int) Math.min(max, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the first position holding a value of at least the given one.
+     */
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long ceil(Number value) {
+        return isIntegral(value) ? value.longValue() : (long) Math.ceil(value.doubleValue());
+    }
+
+    private static long floor(Number value) {
+        return isIntegral(value) ? value.longValue() : (long) Math.floor(value.doubleValue());
+    }
+
+    private static boolean isNaN(Number value) {
+        return !isIntegral(value) && Double.isNaN(value.doubleValue());
+    }
+
+    private static boolean isIntegral(Number value) {
+        return !(value instanceof Double || value instanceof Float);
+    }
+
+    private final class Range implements PostingList {
+
+        private final int min;
+        private final int max;
+        private final int from;
+        private final int to;
+
+        private Range(int min, int max) {
+            this.min = min;
+            this.max = max;
+            this.from = lowerBound(min);
+            this.to = lowerBound((long) max + 1);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public int[] toArray() {
+            int[] rows = Arrays.copyOfRange(sortedRows, from, to);
+            Arrays.sort(rows);
+            return rows;
+        }
+
+        @Override
+        public boolean contains(int row) {
+            return present.get(row) && values[row] >= min && values[row] <= max;
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package io.tradeledger.searchfacade.repository;
+
+/**
+ * The version of a collection as a whole: a number that changes whenever the
+ * collection may have changed, and the time of that change.
+ */
+public final class CollectionVersion {
+
+    private final long number;
+    private final long modifiedAt;
+
+    public CollectionVersion(long number, long modifiedAt) {
+        this.number = number;
+        this.modifiedAt = modifiedAt;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the time the collection was last known to change, in milliseconds since the epoch.
+     */
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    /**
+     * Returns whether the collection may have changed since the version with the given number.
+     */
+    public boolean changedSince(long number) {
+        return this.number != number;
+    }
+
+    @Override
+    public String toString() {
+        return "CollectionVersion{" +
+                "number=" + number +
+                ", modifiedAt=" + modifiedAt +
+                '}';
+    }
+
+}
@@ -0,0 +1,124 @@
+package io.tradeledger.searchfacade.repository;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Marks the position of the last document returned in a page of search results.
+ *
+ * <p>The position is made up of the sort key and the {@code _id} of that document,
+ * which together identify it uniquely. The next page is then fetched by seeking
+ * past this position, so deep pages cost the same as the first one.
+ *
+ * <p>Clients only ever see the encoded, opaque form of a token.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ContinuationToken {
+
+    public static final String ID = "_id";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String sort;
+    private final Object value;
+    private final String id;
+
+    @JsonCreator
+    public ContinuationToken(@JsonProperty(value = "s", required = true) String sort,
+                             @JsonProperty("v") Object value,
+                             @JsonProperty(value = "id", required = true) String id) {
+        this.sort = sort;
+        this.value = value;
+        this.id = id;
+    }
+
+    public static ContinuationToken decode(String token) {
+        try {
+            return MAPPER.readValue(Base64.getUrlDecoder().decode(token), ContinuationToken.class);
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new InvalidParameterException("Invalid page token: " + token);
+        }
+    }
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot encode page token", ex);
+        }
+    }
+
+    /**
+     * Returns the Criteria matching all documents that sort after this position.
+     *
+     * @return the Criteria query object
+     */
+    @JsonIgnore
+    public Criteria getCriteria() {
+        if (ID.equals(sort)) {
+            return Criteria.where(ID).gt(getStoredId());
+        }
+
+        // Null sorts before any other value
+        Criteria after = value == null ? Criteria.where(sort).ne(null) : Criteria.where(sort).gt(value);
+        return new Criteria().orOperator(after, Criteria.where(sort).is(value).and(ID).gt(getStoredId()));
+    }
+
+    /**
+     * Returns the ID as stored. Pages are read as raw documents, so the mapping
+     * layer does not convert the ID, and it is converted here in the same way.
+     */
+    private Object getStoredId() {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    @JsonProperty("s")
+    public String getSort() {
+        return sort;
+    }
+
+    @JsonProperty("v")
+    public Object getValue() {
+        return value;
+    }
+
+    @JsonProperty("id")
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "ContinuationToken{" +
+                "sort='" + sort + '\'' +
+                ", value=" + value +
+                ", id='" + id + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContinuationToken that = (ContinuationToken) o;
+        return Objects.equals(sort, that.sort) &&
+                Objects.equals(value, that.value) &&
+                Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, value, id);
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks the version of the language collection, so that whether anything has
+ * changed since a response was sent can be told without querying MongoDB.
+ *
+ * <p>The version changes on every write through the application and, when the
+ * read replica follows a change stream, on every change it sees, including writes
+ * by other clients. Without a change stream, writes by other clients cannot be
+ * seen, so the version also changes once the cache TTL has passed without a
+ * change; conditional responses are then no more stale than cached ones.
+ *
+ * <p>Version numbers start from the startup time, so that they are not reused
+ * after a restart.
+ */
+@Component
+public class LanguageChangeTracker extends AbstractMongoEventListener<Language> {
+
+    private final LanguageReplica replica;
+    private final long maxUnchangedMs;
+    private final AtomicReference<State> state;
+
+    public LanguageChangeTracker(LanguageReplica replica,
+                                 @Value("${searchfacade.cache.ttl-seconds}") long ttlSeconds) {
+        this.replica = replica;
+        this.maxUnchangedMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        long now = System.currentTimeMillis();
+        // Leaves room for a million changes per millisecond of uptime before numbers could repeat
+        this.state = new AtomicReference<>(new State(new CollectionVersion(now << 20, now), now, replica.getChangeCount()));
+    }
+
+    /**
+     * Returns the current version of the collection.
+     */
+    public CollectionVersion getVersion() {
+        long replicaChanges = replica.getChangeCount();
+        boolean following = replica.isFollowingChanges();
+
+        while (true) {
+            State current = state.get();
+            long now = System.currentTimeMillis();
+            boolean expired = !following && now - current.checkedAt >= maxUnchangedMs;
+
+            if (replicaChanges == current.replicaChanges && !expired) {
+                return current.version;
+            }
+
+            State next = current.next(now, replicaChanges);
+            if (state.compareAndSet(current, next)) {
+                return next.version;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the collection may have changed since the version with the given number.
+     */
+    public boolean changedSince(long number) {
+        return getVersion().changedSince(number);
+    }
+
+    /**
+     * Records that the collection has changed.
+     */
+    public void changed() {
+        long now = System.currentTimeMillis();
+        state.updateAndGet(current -> current.next(now, current.replicaChanges));
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Language> event) {
+        changed();
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Language> event) {
+        changed();
+    }
+
+    private static final class State {
+
+        private final CollectionVersion version;
+        // When the version was last set, as of System.currentTimeMillis()
+        private final long checkedAt;
+        private final long replicaChanges;
+
+        private State(CollectionVersion version, long checkedAt, long replicaChanges) {
+            this.version = version;
+            this.checkedAt = checkedAt;
+            this.replicaChanges = replicaChanges;
+        }
+
+        private State next(long now, long replicaChanges) {
+            // Never goes back in time, so that Last-Modified dates only move forward
+            long modifiedAt = Math.max(now, version.getModifiedAt());
+            return new State(new CollectionVersion(version.getNumber() + 1, modifiedAt), now, replicaChanges);
+        }
+
+    }
+
+}
@@ -1,8 +1,22 @@
 package io.tradeledger.searchfacade.repository;
 
+import io.tradeledger.searchfacade.cache.LanguageCaches;
 import io.tradeledger.searchfacade.model.Language;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Optional;
+
 public interface LanguageRepository extends MongoRepository<Language, String>, LanguageSearchRepository {
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Cached by the collection version read before the lookup as well, see
+     * {@link io.tradeledger.searchfacade.cache.VersionKeyGenerator}.
+     */
+    @Override
+    @Cacheable(cacheNames = LanguageCaches.LANGUAGES, keyGenerator = "versionKeyGenerator")
+    Optional<Language> findById(String id);
+
 }
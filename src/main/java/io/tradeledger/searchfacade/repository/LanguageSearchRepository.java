@@ -1,7 +1,45 @@
 package io.tradeledger.searchfacade.repository;
 
+import io.tradeledger.searchfacade.cache.LanguageCaches;
+import io.tradeledger.searchfacade.filter.Filter;
 import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.model.LanguageGroup;
+import org.springframework.cache.annotation.Cacheable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface LanguageSearchRepository extends SearchRepository<Language> {
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Cached by the collection version read before the search as well, see
+     * {@link io.tradeledger.searchfacade.cache.SearchKeyGenerator}.
+     */
+    @Override
+    @Cacheable(cacheNames = LanguageCaches.SEARCHES, keyGenerator = "searchKeyGenerator")
+    SearchPage<Language> search(Filter[] filters, SearchPageRequest pageRequest);
+
+    /**
+     * Finds many languages by ID with as few queries as possible: one {@code $in}
+     * query, or one per chunk of IDs for large lookups.
+     *
+     * @param ids the IDs to look up
+     * @return the languages found, by ID; IDs not found have no entry
+     */
+    Map<String, Language> findAllByIds(Collection<String> ids);
+
+    /**
+     * Groups the search results by an attribute in a single aggregation, so that
+     * only the summaries are sent back rather than the documents.
+     *
+     * @param filters the filters to apply
+     * @param by the attribute to group by
+     * @param field the attribute to report the minimum and maximum of per group, or null
+     * @return the groups in ascending order of their value
+     */
+    List<LanguageGroup> group(Filter[] filters, String by, String field);
+
 }
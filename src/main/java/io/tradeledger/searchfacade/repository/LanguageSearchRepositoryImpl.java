@@ -1,23 +1,208 @@
 package io.tradeledger.searchfacade.repository;
 
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
 import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
 import io.tradeledger.searchfacade.model.Language;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.tradeledger.searchfacade.model.LanguageGroup;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public class LanguageSearchRepositoryImpl implements LanguageSearchRepository {
 
     private MongoOperations operations;
+    private QueryPlanCache queryPlans;
+    private LanguageReplica replica;
+    private SearchMetrics metrics;
+    private SlowQueryLog slowQueries;
+    private AdaptiveConcurrencyLimit queryLimit;
+    private int lookupChunkSize;
 
-    public LanguageSearchRepositoryImpl(MongoOperations operations) {
+    public LanguageSearchRepositoryImpl(MongoOperations operations, QueryPlanCache queryPlans,
+                                        LanguageReplica replica, SearchMetrics metrics, SlowQueryLog slowQueries,
+                                        AdaptiveConcurrencyLimit queryLimit,
+                                        @Value("${searchfacade.lookup.chunk-size}") int lookupChunkSize) {
         this.operations = operations;
+        this.queryPlans = queryPlans;
+        this.replica = replica;
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+        this.queryLimit = queryLimit;
+        this.lookupChunkSize = lookupChunkSize;
+    }
+
+    @Override
+    public Query getQuery(Filter[] filters) {
+        long startedAt = metrics.start();
+        Query query = queryPlans.getPlan(filters).bind(filters);
+        metrics.stop(SearchMetrics.PLAN, filters, startedAt);
+        return query;
     }
 
     @Override
     public List<Language> search(Filter[] filters) {
-        return operations.find(getQuery(filters), Language.class);
+        validate(filters);
+        long startedAt = metrics.start();
+        Optional<List<Language>> replicated = replica.search(filters, Projection.all());
+        List<Language> languages;
+
+        if (replicated.isPresent()) {
+            metrics.stop(SearchMetrics.REPLICA, filters, startedAt);
+            languages = replicated.get();
+        } else {
+            Query query = getQuery(filters);
+            startedAt = System.nanoTime();
+            languages = queryLimit.execute(() -> operations.find(query, Language.class));
+            metrics.stop(SearchMetrics.MONGO, filters, startedAt);
+            metrics.sampleExecutionStats(filters, query);
+            slowQueries.record(filters, query, startedAt, languages.size());
+        }
+
+        metrics.recordDocuments(filters, languages.size());
+        return languages;
+    }
+
+    @Override
+    public SearchPage<Language> search(Filter[] filters, SearchPageRequest pageRequest) {
+        validate(filters);
+        long startedAt = metrics.start();
+        Optional<SearchPage<Language>> replicated = replica.search(filters, pageRequest);
+        SearchPage<Language> page;
+
+        if (replicated.isPresent()) {
+            metrics.stop(SearchMetrics.REPLICA, filters, startedAt);
+            page = replicated.get();
+        } else {
+            page = find(filters, pageRequest);
+        }
+
+        metrics.recordDocuments(filters, page.getContent().size());
+        return page;
+    }
+
+    private SearchPage<Language> find(Filter[] filters, SearchPageRequest pageRequest) {
+        Query query = getQuery(filters, pageRequest);
+        // Always timed, for the slow query log
+        long startedAt = System.nanoTime();
+        // The raw documents carry the stored sort values needed for the next page token
+        List<Document> documents = queryLimit.execute(() -> operations.find(query, Document.class,
+                operations.getCollectionName(Language.class)));
+        metrics.stop(SearchMetrics.MONGO, filters, startedAt);
+        metrics.sampleExecutionStats(filters, query);
+        slowQueries.record(filters, query, startedAt, documents.size());
+
+        return SearchPage.of(documents, pageRequest,
+                document -> operations.getConverter().read(Language.class, document));
+    }
+
+    @Override
+    public Stream<Language> stream(Filter[] filters, Projection projection) {
+        validate(filters);
+        Optional<List<Language>> replicated = replica.search(filters, projection);
+        if (replicated.isPresent()) {
+            return replicated.get().stream();
+        }
+
+        Query query = projection.applyTo(getQuery(filters));
+        // Held until the stream is closed, as the cursor is read while the response is written
+        AdaptiveConcurrencyLimit.Permit permit = queryLimit.acquire();
+        try {
+            // Nothing beyond the projected fields is needed, so indexed fields can be streamed from the index alone
+            Stream<Language> languages = StreamUtils.createStreamFromIterator(operations.stream(query, Language.class))
+                    .onClose(permit::release);
+            // Opening the cursor fetched its first batch; the rest is read as fast as the client reads
+            permit.recordLatency();
+            return languages;
+        } catch (RuntimeException ex) {
+            permit.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public long count(Filter[] filters) {
+        validate(filters);
+        return replica.count(filters)
+                .orElseGet(() -> queryLimit.execute(() -> operations.count(getQuery(filters), Language.class)));
+    }
+
+    @Override
+    public Map<String, Language> findAllByIds(Collection<String> ids) {
+        List<String> remaining = new ArrayList<>(ids);
+        Map<String, Language> languages = new HashMap<>(remaining.size() * 2);
+
+        // Keep each $in list small enough to stay well within the maximum query size
+        for (int from = 0; from < remaining.size(); from += lookupChunkSize) {
+            List<String> chunk = remaining.subList(from, Math.min(from + lookupChunkSize, remaining.size()));
+            Query query = Query.query(Criteria.where("id").in(chunk));
+            for (Language language : queryLimit.execute(() -> operations.find(query, Language.class))) {
+                languages.put(language.getId(), language);
+            }
+        }
+
+        return languages;
+    }
+
+    @Override
+    public List<LanguageGroup> group(Filter[] filters, String by, String field) {
+        Document group = new Document(ContinuationToken.ID, "$" + getFieldName(by))
+                .append("count", new Document("$sum", 1));
+        if (field != null) {
+            String fieldName = getFieldName(field);
+            group.append("min", new Document("$min", "$" + fieldName))
+                    .append("max", new Document("$max", "$" + fieldName));
+        }
+
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", getQuery(filters).getQueryObject()),
+                new Document("$group", group),
+                new Document("$sort", new Document(ContinuationToken.ID, 1)));
+
+        return queryLimit.execute(() -> {
+            List<LanguageGroup> groups = new ArrayList<>();
+            for (Document document : operations.getCollection(operations.getCollectionName(Language.class))
+                    .aggregate(pipeline)) {
+                groups.add(new LanguageGroup(document.get(ContinuationToken.ID),
+                        ((Number) document.get("count")).longValue(), document.get("min"), document.get("max")));
+            }
+            return groups;
+        });
+    }
+
+    /**
+     * Returns the stored field name of a language attribute other than the ID.
+     */
+    private String getFieldName(String attribute) {
+        MongoPersistentProperty property = operations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Language.class).getPersistentProperty(attribute);
+        if (property == null || property.isIdProperty()) {
+            throw new InvalidParameterException("Invalid attribute: " + attribute);
+        }
+        return property.getFieldName();
+    }
+
+    /**
+     * Rejects invalid filters the same way whether the replica or MongoDB answers the search.
+     */
+    private void validate(Filter[] filters) {
+        queryPlans.getPlan(filters);
     }
 
 }
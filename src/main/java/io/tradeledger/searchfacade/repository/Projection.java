@@ -0,0 +1,144 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The set of document fields to fetch and return.
+ *
+ * <p>Only the requested fields are read from the database. {@code _id} is left out
+ * unless requested, so that a query filtering and projecting on indexed fields only
+ * can be answered from the index alone, i.e. as a covered query.
+ *
+ * <p>Fields are requested by the names responses use, or by their stored names,
+ * and must be the ID or a searchable attribute.
+ */
+public final class Projection {
+
+    private static final Projection ALL = new Projection(Collections.emptySet());
+    // Named after its getter in responses
+    private static final String JVM_BASED = "jvmBased";
+
+    private final Set<String> fields;
+
+    private Projection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static Projection all() {
+        return ALL;
+    }
+
+    /**
+     * Creates a projection from the raw request parameter.
+     *
+     * @param schema the attributes that may be returned, besides the ID
+     * @param fields the attribute names to return, or null or empty for all of them
+     * @return the projection
+     * @throws InvalidParameterException if a field is neither the ID nor a searchable attribute
+     */
+    public static Projection of(LanguageSchema schema, String[] fields) {
+        if (fields == null || fields.length == 0) {
+            return ALL;
+        }
+
+        Set<String> projected = new LinkedHashSet<>();
+
+        for (String field : fields) {
+            String stored = toStored(field);
+            if (!ContinuationToken.ID.equals(stored) && schema.getType(stored) == null) {
+                throw new InvalidParameterException("Invalid field: " + field);
+            }
+
+            projected.add(stored);
+        }
+
+        return new Projection(Collections.unmodifiableSet(projected));
+    }
+
+    private static String toStored(String field) {
+        switch (field) {
+            case "id":
+                return ContinuationToken.ID;
+            case JVM_BASED:
+                return "isJvmBased";
+            default:
+                return field;
+        }
+    }
+
+    public boolean isAll() {
+        return fields.isEmpty();
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Restricts a query to the projected fields plus the given required ones.
+     *
+     * @param query the query to restrict
+     * @param required fields needed in any case, e.g. to sort or page
+     * @return the restricted query
+     */
+    public Query applyTo(Query query, String... required) {
+        if (isAll()) {
+            return query;
+        }
+
+        Field queryFields = query.fields();
+        fields.forEach(queryFields::include);
+        Arrays.stream(required).forEach(queryFields::include);
+
+        if (!fields.contains(ContinuationToken.ID) && !Arrays.asList(required).contains(ContinuationToken.ID)) {
+            queryFields.exclude(ContinuationToken.ID);
+        }
+
+        return query;
+    }
+
+    /**
+     * Removes the fields that were only fetched because they were required.
+     *
+     * @param document the fetched document
+     * @return the document with the projected fields only
+     */
+    public Document strip(Document document) {
+        if (!isAll()) {
+            document.keySet().retainAll(fields);
+        }
+
+        return document;
+    }
+
+    @Override
+    public String toString() {
+        return "Projection{" +
+                "fields=" + fields +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Projection that = (Projection) o;
+        return Objects.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fields);
+    }
+
+}
@@ -0,0 +1,196 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.OrFilter;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A compiled query for a single filter shape.
+ *
+ * <p>The shape is validated once when the plan is compiled. Binding a set of
+ * filters of the same shape then only puts their values into a query document,
+ * without building Criteria objects or validating the filters again.
+ *
+ * <p>Plans also count how often they are used and keep a sample query, so that
+ * indexes can be matched to the queries that actually run.
+ *
+ * <p>{@link OrFilter} groups are left out of the plan's attributes, as no single
+ * index serves them. A single group is bound with the other filters distributed
+ * into each of its branches, e.g. {@code {a: 1, $or: [{b: 2}, {c: 3}]}} as
+ * {@code {$or: [{a: 1, b: 2}, {a: 1, c: 3}]}}, so that MongoDB can plan each branch
+ * on an index of its own, e.g. one on {@code a, b} and one on {@code a, c}, and merge
+ * their results, rather than scanning all documents matching {@code a}. Several
+ * groups, or branches on attributes the other filters have, are bound as they are.
+ */
+public final class QueryPlan {
+
+    private final String shape;
+    private final List<String> attributes;
+    private final List<String> equalityAttributes;
+    private final List<String> rangeAttributes;
+    private final boolean distributed;
+    private final LongAdder uses = new LongAdder();
+    private volatile Document sample;
+
+    private QueryPlan(String shape, List<String> attributes,
+                      List<String> equalityAttributes, List<String> rangeAttributes, boolean distributed) {
+        this.shape = shape;
+        this.attributes = attributes;
+        this.equalityAttributes = equalityAttributes;
+        this.rangeAttributes = rangeAttributes;
+        this.distributed = distributed;
+    }
+
+    static QueryPlan compile(String shape, Filter[] filters) {
+        Filter[] sorted = filters.clone();
+        Arrays.sort(sorted, Comparator.comparing(Filter::getAttribute));
+
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i].getAttribute().equals(sorted[i - 1].getAttribute()) && !(sorted[i] instanceof OrFilter)) {
+                // Duplicate attributes are not allowed
+                throw new InvalidParameterException("Duplicate attribute: " + sorted[i].getAttribute());
+            }
+        }
+
+        List<String> attributes = new ArrayList<>();
+        List<String> equalities = new ArrayList<>();
+        List<String> ranges = new ArrayList<>();
+        List<String> branchAttributes = new ArrayList<>();
+        int groups = 0;
+
+        for (Filter filter : sorted) {
+            if (filter instanceof OrFilter) {
+                groups++;
+                branchAttributes.addAll(filter.getAttributes());
+                continue;
+            }
+            attributes.add(filter.getAttribute());
+            (filter.isRange() ? ranges : equalities).add(filter.getAttribute());
+        }
+
+        // Distributing several groups would multiply their branches
+        boolean distributed = groups == 1 && !attributes.isEmpty()
+                && Collections.disjoint(attributes, branchAttributes);
+
+        return new QueryPlan(shape, Collections.unmodifiableList(attributes),
+                Collections.unmodifiableList(equalities), Collections.unmodifiableList(ranges), distributed);
+    }
+
+    /**
+     * Returns the query for the given filters, which must be of this plan's shape.
+     *
+     * @param filters the filters to bind
+     * @return the query object
+     */
+    public Query bind(Filter[] filters) {
+        Document document = new Document();
+        List<OrFilter> groups = null;
+
+        for (Filter filter : filters) {
+            if (filter instanceof OrFilter) {
+                if (groups == null) {
+                    groups = new ArrayList<>(1);
+                }
+                groups.add((OrFilter) filter);
+            } else {
+                document.put(filter.getAttribute(), filter.getQueryValue());
+            }
+        }
+
+        if (distributed) {
+            document = distribute(document, groups.get(0));
+        } else if (groups != null && groups.size() == 1) {
+            document.put(OrFilter.OR, groups.get(0).getQueryValue());
+        } else if (groups != null) {
+            List<Document> conjunction = new ArrayList<>(groups.size());
+            for (OrFilter group : groups) {
+                conjunction.add(new Document(OrFilter.OR, group.getQueryValue()));
+            }
+            document.put("$and", conjunction);
+        }
+
+        uses.increment();
+        if (sample == null) {
+            // Copied, as the query is restricted further by its caller, e.g. to a page
+            sample = new Document(document);
+        }
+
+        return new BasicQuery(document);
+    }
+
+    private static Document distribute(Document document, OrFilter group) {
+        List<Document> branches = new ArrayList<>(group.getFilters().size());
+        for (LanguageFilter filter : group.getFilters()) {
+            branches.add(new Document(document).append(filter.getAttribute(), filter.getQueryValue()));
+        }
+        return new Document(OrFilter.OR, branches);
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    public List<String> getEqualityAttributes() {
+        return equalityAttributes;
+    }
+
+    public List<String> getRangeAttributes() {
+        return rangeAttributes;
+    }
+
+    /**
+     * Returns whether the other filters are distributed into the branches of an or group.
+     */
+    public boolean isDistributed() {
+        return distributed;
+    }
+
+    /**
+     * Returns the keys of the compound index best suited to this plan: the
+     * equality attributes followed by the range attributes, so that the range
+     * scan covers a single contiguous part of the index.
+     *
+     * @return the index keys, in order
+     */
+    public List<String> getIndexKeys() {
+        List<String> keys = new ArrayList<>(equalityAttributes);
+        keys.addAll(rangeAttributes);
+        return keys;
+    }
+
+    public long getUses() {
+        return uses.sum();
+    }
+
+    /**
+     * Returns the query document of the first query bound by this plan.
+     *
+     * @return the sample query document, or null if the plan has not been used yet
+     */
+    public Document getSample() {
+        return sample;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlan{" +
+                "shape='" + shape + '\'' +
+                '}';
+    }
+
+}
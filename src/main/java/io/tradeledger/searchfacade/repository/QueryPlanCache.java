@@ -0,0 +1,67 @@
+package io.tradeledger.searchfacade.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.tradeledger.searchfacade.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Caches compiled query plans by the canonical shape of their filter set.
+ *
+ * <p>The canonical shape is the sorted list of the individual filter shapes,
+ * so the order in which filters are passed does not matter.
+ *
+ * <p>A cached plan only saves checking the shape for duplicate attributes and
+ * sorting its attributes; the filters are still validated when parsed, and the
+ * query is still built for each search. Plans are also where the index manager
+ * finds the shapes that are searched, so the cache is bounded by evicting the
+ * least used shapes rather than by refusing new ones.
+ */
+@Component
+public class QueryPlanCache {
+
+    private final Cache<String, QueryPlan> plans;
+
+    public QueryPlanCache(@Value("${searchfacade.search.query-plan-cache-size}") int maxSize) {
+        // Admission by frequency keeps the plans of frequently searched shapes
+        this.plans = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    public QueryPlan getPlan(Filter[] filters) {
+        // Invalid shapes throw, and are not cached
+        return plans.get(getShape(filters), shape -> QueryPlan.compile(shape, filters));
+    }
+
+    public Collection<QueryPlan> getPlans() {
+        return Collections.unmodifiableCollection(plans.asMap().values());
+    }
+
+    public int size() {
+        // Eviction is deferred, so the size is only settled after pending maintenance
+        plans.cleanUp();
+        return (int) plans.estimatedSize();
+    }
+
+    /**
+     * Returns the canonical shape of a filter set.
+     *
+     * @param filters the filters
+     * @return the canonical shape
+     */
+    public static String getShape(Filter[] filters) {
+        String[] shapes = new String[filters.length];
+
+        for (int i = 0; i < filters.length; i++) {
+            shapes[i] = filters[i].getShape();
+        }
+
+        Arrays.sort(shapes);
+        return String.join(",", shapes);
+    }
+
+}
@@ -0,0 +1,9 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.model.Language;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveLanguageRepository extends ReactiveMongoRepository<Language, String>,
+        ReactiveLanguageSearchRepository {
+
+}
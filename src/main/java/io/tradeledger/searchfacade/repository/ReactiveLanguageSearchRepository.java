@@ -0,0 +1,7 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.model.Language;
+
+public interface ReactiveLanguageSearchRepository extends ReactiveSearchRepository<Language> {
+
+}
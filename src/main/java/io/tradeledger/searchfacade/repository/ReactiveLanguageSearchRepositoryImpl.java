@@ -0,0 +1,92 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import io.tradeledger.searchfacade.model.Language;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches languages with the reactive MongoDB driver.
+ *
+ * <p>As in {@link LanguageSearchRepositoryImpl}, filters are validated by compiling
+ * their query plan, and searches are timed, counted and logged when slow. Each search
+ * holds a slot of the concurrency limit from subscription until it completes, fails
+ * or is cancelled. The read replica and the search and response caches are
+ * deliberately left out: they hold whole result lists and answer on the calling
+ * thread, whereas these searches are streamed from the database cursor, so they
+ * always reflect MongoDB as queried.
+ */
+public class ReactiveLanguageSearchRepositoryImpl implements ReactiveLanguageSearchRepository {
+
+    private final ReactiveMongoOperations operations;
+    private final QueryPlanCache queryPlans;
+    private final SearchMetrics metrics;
+    private final SlowQueryLog slowQueries;
+    private final AdaptiveConcurrencyLimit queryLimit;
+    private final String collectionName;
+
+    public ReactiveLanguageSearchRepositoryImpl(ReactiveMongoOperations operations, QueryPlanCache queryPlans,
+                                                SearchMetrics metrics, SlowQueryLog slowQueries,
+                                                AdaptiveConcurrencyLimit queryLimit) {
+        this.operations = operations;
+        this.queryPlans = queryPlans;
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+        this.queryLimit = queryLimit;
+        this.collectionName = operations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Language.class).getCollection();
+    }
+
+    @Override
+    public Flux<Language> search(Filter[] filters) {
+        Query query = getQuery(filters);
+        return Flux.using(queryLimit::acquire, permit -> {
+            long startedAt = System.nanoTime();
+            AtomicInteger count = new AtomicInteger();
+            // Emitted as fast as the subscriber requests, so only the wait for the first result counts
+            return operations.find(query, Language.class)
+                    .doOnNext(language -> {
+                        count.incrementAndGet();
+                        permit.recordLatency();
+                    })
+                    .doOnComplete(() -> record(filters, query, startedAt, count.get()));
+        }, AdaptiveConcurrencyLimit.Permit::release);
+    }
+
+    @Override
+    public Mono<SearchPage<Language>> search(Filter[] filters, SearchPageRequest pageRequest) {
+        Query query = pageRequest.applyTo(getQuery(filters));
+        return Mono.using(queryLimit::acquire, permit -> {
+            long startedAt = System.nanoTime();
+            return operations.find(query, Document.class, collectionName)
+                    .collectList()
+                    .doOnNext(documents -> record(filters, query, startedAt, documents.size()));
+        }, AdaptiveConcurrencyLimit.Permit::release).map(documents -> SearchPage.of(documents, pageRequest,
+                document -> operations.getConverter().read(Language.class, document)));
+    }
+
+    /**
+     * Returns the query for the filters, rejecting invalid filters before anything is sent.
+     */
+    private Query getQuery(Filter[] filters) {
+        long startedAt = metrics.start();
+        Query query = queryPlans.getPlan(filters).bind(filters);
+        metrics.stop(SearchMetrics.PLAN, filters, startedAt);
+        return query;
+    }
+
+    private void record(Filter[] filters, Query query, long startedAt, int resultCount) {
+        metrics.stop(SearchMetrics.MONGO, filters, startedAt);
+        metrics.recordDocuments(filters, resultCount);
+        slowQueries.record(filters, query, startedAt, resultCount);
+    }
+
+}
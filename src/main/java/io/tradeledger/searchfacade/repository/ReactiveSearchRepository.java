@@ -0,0 +1,30 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link SearchRepository}, with the same filter semantics.
+ *
+ * <p>No thread is held while a query is running, so the number of concurrent
+ * searches is bounded by the database rather than by a thread pool.
+ *
+ * <p>Sample implementation:
+ * {@link ReactiveLanguageSearchRepositoryImpl}
+ *
+ */
+public interface ReactiveSearchRepository<T> {
+
+    Flux<T> search(Filter[] filters);
+
+    /**
+     * Returns a single page of search results using keyset pagination.
+     *
+     * @param filters the filters to apply
+     * @param pageRequest the sort attribute, position and size of the page
+     * @return the page of results and the token for the next page, if any
+     */
+    Mono<SearchPage<T>> search(Filter[] filters, SearchPageRequest pageRequest);
+
+}
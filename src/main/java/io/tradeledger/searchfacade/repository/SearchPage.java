@@ -0,0 +1,83 @@
+package io.tradeledger.searchfacade.repository;
+
+import org.bson.Document;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A single page of search results, together with the token for the next page
+ * if there are more results.
+ */
+public final class SearchPage<T> {
+
+    private final List<T> content;
+    private final String nextPageToken;
+
+    public SearchPage(List<T> content, String nextPageToken) {
+        this.content = content;
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * Creates a page from raw documents fetched with one more result than the
+     * page size, where the extra result only signals that a next page exists.
+     *
+     * @param documents the fetched documents, in sort order
+     * @param pageRequest the request the documents were fetched for
+     * @param reader converts a raw document into a result
+     * @return the page of results
+     */
+    public static <T> SearchPage<T> of(List<Document> documents, SearchPageRequest pageRequest,
+                                       Function<Document, T> reader) {
+        // Fields only fetched for paging are dropped after the token has been taken
+        Function<Document, T> projectedReader = reader.compose(pageRequest.getProjection()::strip);
+        int size = pageRequest.getSize();
+        if (documents.size() <= size) {
+            return new SearchPage<>(documents.stream().map(projectedReader).collect(Collectors.toList()), null);
+        }
+
+        List<Document> page = documents.subList(0, size);
+        Document last = page.get(size - 1);
+        String sort = pageRequest.getSort();
+        ContinuationToken token = new ContinuationToken(sort,
+                ContinuationToken.ID.equals(sort) ? null : last.get(sort),
+                last.get(ContinuationToken.ID).toString());
+
+        return new SearchPage<>(page.stream().map(projectedReader).collect(Collectors.toList()), token.encode());
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public Optional<String> getNextPageToken() {
+        return Optional.ofNullable(nextPageToken);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchPage{" +
+                "content=" + content +
+                ", nextPageToken='" + nextPageToken + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchPage<?> that = (SearchPage<?>) o;
+        return Objects.equals(content, that.content) &&
+                Objects.equals(nextPageToken, that.nextPageToken);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(content, nextPageToken);
+    }
+
+}
@@ -0,0 +1,190 @@
+package io.tradeledger.searchfacade.repository;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * Describes which page of search results to fetch, and which of their fields.
+ *
+ * <p>Results are sorted ascending by the sort attribute and then by {@code _id}.
+ * The first page is requested without a token; each following page is requested
+ * with the token returned alongside the previous one.
+ */
+public final class SearchPageRequest {
+
+    private final String sort;
+    private final ContinuationToken token;
+    private final int size;
+    private final Projection projection;
+
+    private SearchPageRequest(String sort, ContinuationToken token, int size, Projection projection) {
+        this.sort = sort;
+        this.token = token;
+        this.size = size;
+        this.projection = projection;
+    }
+
+    /**
+     * Creates a page request from the raw request parameters.
+     *
+     * @param schema the attributes that may be sorted by, besides the ID
+     * @param sort the attribute to sort by, or null to sort by {@code _id} (or by the token's sort attribute)
+     * @param pageToken the encoded token of the previous page, or null for the first page
+     * @param size the maximum number of results in the page
+     * @return the page request
+     * @throws InvalidParameterException if the size, the sort attribute or the token is invalid
+     */
+    public static SearchPageRequest of(LanguageSchema schema, String sort, String pageToken, int size) {
+        if (size < 1) {
+            throw new InvalidParameterException("Invalid page size: " + size);
+        }
+
+        if ("id".equals(sort)) {
+            sort = ContinuationToken.ID;
+        }
+        if (sort != null) {
+            checkSort(schema, sort);
+        }
+
+        if (pageToken == null) {
+            return new SearchPageRequest(sort == null ? ContinuationToken.ID : sort, null, size, Projection.all());
+        }
+
+        ContinuationToken token = ContinuationToken.decode(pageToken);
+        if (sort != null && !sort.equals(token.getSort())) {
+            throw new InvalidParameterException("Page token does not match sort: " + sort);
+        }
+        // Tokens are sent back by clients, so they are no more trusted than the sort parameter
+        checkSort(schema, token.getSort());
+
+        return new SearchPageRequest(token.getSort(), token, size, Projection.all());
+    }
+
+    /**
+     * Creates a page request from the raw request parameters, capping the page size.
+     *
+     * @param schema the attributes that may be sorted by, besides the ID
+     * @param sort the attribute to sort by, or null
+     * @param pageToken the encoded token of the previous page, or null for the first page
+     * @param size the requested page size, or null for the maximum
+     * @param maxSize the maximum page size
+     * @return the page request
+     */
+    public static SearchPageRequest of(LanguageSchema schema, String sort, String pageToken, Integer size,
+                                       int maxSize) {
+        return of(schema, sort, pageToken, size == null ? maxSize : Math.min(size, maxSize));
+    }
+
+    public static SearchPageRequest first(int size) {
+        if (size < 1) {
+            throw new InvalidParameterException("Invalid page size: " + size);
+        }
+        return new SearchPageRequest(ContinuationToken.ID, null, size, Projection.all());
+    }
+
+    /**
+     * Rejects sort attributes other than the ID and the searchable attributes, so that
+     * neither the sort nor the token criteria are given arbitrary field names or operators.
+     */
+    private static void checkSort(LanguageSchema schema, String sort) {
+        if (!ContinuationToken.ID.equals(sort) && schema.getType(sort) == null) {
+            throw new InvalidParameterException("Invalid sort attribute: " + sort);
+        }
+    }
+
+    /**
+     * Returns a copy of this page request fetching the given fields only.
+     *
+     * @param projection the fields to fetch
+     * @return the page request
+     */
+    public SearchPageRequest withProjection(Projection projection) {
+        return new SearchPageRequest(sort, token, size, projection);
+    }
+
+    /**
+     * Restricts a query to this page by seeking past the token position,
+     * sorting and limiting the results, and to the projected fields.
+     *
+     * @param query the query to restrict
+     * @return the restricted query
+     */
+    public Query applyTo(Query query) {
+        if (token != null) {
+            Criteria criteria = token.getCriteria();
+            Document queryObject = query.getQueryObject();
+            Document tokenObject = criteria.getCriteriaObject();
+
+            if (Collections.disjoint(queryObject.keySet(), tokenObject.keySet())) {
+                query.addCriteria(criteria);
+            } else {
+                // An $or of the filters would be replaced by the token's, so both are required separately
+                query = new BasicQuery(new Document("$and", Arrays.asList(queryObject, tokenObject)));
+            }
+        }
+
+        if (ContinuationToken.ID.equals(sort)) {
+            query.with(Sort.by(ContinuationToken.ID));
+        } else {
+            query.with(Sort.by(sort, ContinuationToken.ID));
+        }
+
+        // The sort key and _id are needed for the next page token
+        projection.applyTo(query, sort, ContinuationToken.ID);
+
+        // Fetch one extra result to find out whether there is a next page
+        return query.limit(size + 1);
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public ContinuationToken getToken() {
+        return token;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Projection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchPageRequest{" +
+                "sort='" + sort + '\'' +
+                ", token=" + token +
+                ", size=" + size +
+                ", projection=" + projection +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchPageRequest that = (SearchPageRequest) o;
+        return size == that.size &&
+                Objects.equals(sort, that.sort) &&
+                Objects.equals(token, that.token) &&
+                Objects.equals(projection, that.projection);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, token, size, projection);
+    }
+
+}
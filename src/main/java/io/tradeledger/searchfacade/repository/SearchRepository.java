@@ -5,6 +5,7 @@ import io.tradeledger.searchfacade.filter.Filter;
 import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Allows searching the repository via filter request parameters.
@@ -22,6 +23,35 @@ public interface SearchRepository<T> {
 
     List<T> search(Filter[] filters);
 
+    /**
+     * Returns a single page of search results using keyset pagination.
+     *
+     * @param filters the filters to apply
+     * @param pageRequest the sort attribute, position and size of the page
+     * @return the page of results and the token for the next page, if any
+     */
+    SearchPage<T> search(Filter[] filters, SearchPageRequest pageRequest);
+
+    /**
+     * Returns the search results as a stream backed by an open database cursor,
+     * so that documents are fetched in batches rather than loaded all at once.
+     *
+     * <p>The stream holds a server-side cursor and must be closed by the caller.
+     *
+     * @param filters the filters to apply
+     * @param projection the fields to fetch
+     * @return a lazily populated stream of results
+     */
+    Stream<T> stream(Filter[] filters, Projection projection);
+
+    /**
+     * Counts the search results without fetching them.
+     *
+     * @param filters the filters to apply
+     * @return the exact number of results
+     */
+    long count(Filter[] filters);
+
     default Query getQuery(Filter[] filters) {
         Query query = new Query();
 
@@ -37,4 +67,8 @@ public interface SearchRepository<T> {
         return query;
     }
 
+    default Query getQuery(Filter[] filters, SearchPageRequest pageRequest) {
+        return pageRequest.applyTo(getQuery(filters));
+    }
+
 }
@@ -0,0 +1,86 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.admission.RateLimiter;
+import io.tradeledger.searchfacade.exception.TooManyRequestsException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdmissionTests {
+
+    @Test
+    public void rateLimitPerClient() {
+        RateLimiter rateLimiter = new RateLimiter(0.1, 2, 100);
+
+        rateLimiter.acquire("a", 1);
+        rateLimiter.acquire("a", 1);
+        assertThatThrownBy(() -> rateLimiter.acquire("a", 1))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(ex -> assertThat(((TooManyRequestsException) ex).getRetryAfterSeconds())
+                        .isBetween(9L, 10L));
+
+        // Costs above the burst are capped at it
+        rateLimiter.acquire("b", 5);
+        assertThatThrownBy(() -> rateLimiter.acquire("b", 0.5)).isInstanceOf(TooManyRequestsException.class);
+
+        // Disabled
+        RateLimiter unlimited = new RateLimiter(0, 0, 100);
+        for (int i = 0; i < 10; i++) {
+            unlimited.acquire("a", 10);
+        }
+    }
+
+    @Test
+    public void concurrencyLimitRejectsQueriesOverLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 2, 10_000);
+
+        assertThatThrownBy(() -> limit.execute(() -> limit.execute(() -> limit.execute(() -> 1))))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(limit.getInFlight()).isEqualTo(0);
+        assertThat(limit.execute(() -> limit.execute(() -> 2))).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrencyLimitAdapts() {
+        // Raised while used up and fast
+        AdaptiveConcurrencyLimit fast = new AdaptiveConcurrencyLimit(1, 1, 4, 10_000);
+        fast.execute(() -> 1);
+        assertThat(fast.getLimit()).isEqualTo(2);
+
+        // Lowered while slow, down to the minimum
+        AdaptiveConcurrencyLimit slow = new AdaptiveConcurrencyLimit(10, 8, 20, 0);
+        for (int i = 0; i < 5; i++) {
+            slow.execute(() -> {
+                sleep(2);
+                return 1;
+            });
+        }
+        assertThat(slow.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    public void concurrencyLimitIgnoresTimeSpentConsumingResults() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 20, 50);
+
+        // Streamed slowly after a fast first batch
+        AdaptiveConcurrencyLimit.Permit permit = limit.acquire();
+        permit.recordLatency();
+        sleep(100);
+        permit.release();
+        permit.release();
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+        assertThat(limit.getInFlight()).isEqualTo(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package io.tradeledger.searchfacade;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.tradeledger.searchfacade.cache.LanguageCacheInvalidator;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.ingest.BatchReport;
+import io.tradeledger.searchfacade.ingest.BulkIngester;
+import io.tradeledger.searchfacade.ingest.IngestReport;
+import io.tradeledger.searchfacade.ingest.RecordError;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import org.assertj.core.groups.Tuple;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkIngesterTests {
+
+    private final MongoOperations operations = mock(MongoOperations.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final LanguageCacheInvalidator cacheInvalidator = mock(LanguageCacheInvalidator.class);
+    private final LanguageChangeTracker changeTracker = mock(LanguageChangeTracker.class);
+
+    private BulkIngester ingester(int batchSize) {
+        return ingester(batchSize, 1, 1);
+    }
+
+    private BulkIngester ingester(int batchSize, int maxInFlight, int writerThreads) {
+        when(operations.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Language.class))).thenReturn(bulk);
+        when(operations.getConverter())
+                .thenReturn(new MappingMongoConverter(mock(DbRefResolver.class), new MongoMappingContext()));
+        return new BulkIngester(operations, new ObjectMapper(), new LanguageSchema("isJvmBased:string"),
+                cacheInvalidator, changeTracker,
+                new SimpleMeterRegistry(), batchSize, maxInFlight, 10, writerThreads);
+    }
+
+    @Test
+    public void writesValidRecordsInBatches() throws IOException {
+        IngestReport report = ingester(2).ingest(input(
+                "{\"language\":\"Java\",\"version\":7,\"jvmBased\":true}",
+                "{\"language\":\"Java\",\"version\":8,\"jvmBased\":true}",
+                "{\"language\":\"\",\"version\":8,\"jvmBased\":true}",
+                "{\"language\":\"Kotlin\",\"version\":1,\"jvmBased\":true}"));
+
+        assertThat(report.getRecords()).isEqualTo(4);
+        assertThat(report.getWritten()).isEqualTo(3);
+        assertThat(report.getInvalid()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting(RecordError::getLine).containsExactly(3L);
+        assertThat(report.getBatches()).extracting(BatchReport::getWritten).containsExactly(2, 1);
+        ArgumentCaptor<Object> inserted = ArgumentCaptor.forClass(Object.class);
+        verify(bulk, times(3)).insert(inserted.capture());
+        // Stored as in the schema
+        assertThat(((Document) inserted.getValue()).get("isJvmBased")).isEqualTo("true");
+        verify(bulk, times(2)).execute();
+        verify(cacheInvalidator, times(2)).evictAll();
+        verify(changeTracker, times(2)).changed();
+    }
+
+    @Test
+    public void reportsWriteErrorsByLine() throws IOException {
+        BulkIngester ingester = ingester(10);
+        when(bulk.execute()).thenThrow(new DataIntegrityViolationException("write errors",
+                new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList()),
+                        Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                        null, new ServerAddress())));
+
+        IngestReport report = ingester.ingest(input(
+                "",
+                "{\"language\":\"Java\",\"version\":7,\"jvmBased\":true}",
+                "{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"isJvmBased\":\"true\"}"));
+
+        assertThat(report.getWritten()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getBatches().get(0).getErrors())
+                .extracting(RecordError::getLine, RecordError::getMessage)
+                .containsExactly(Tuple.tuple(3L, "duplicate key"));
+        verify(bulk).upsert(any(), any());
+        verify(cacheInvalidator).evictAll();
+    }
+
+    @Test
+    public void writesAtMostAsManyBatchesAsWriterThreads() throws Exception {
+        BulkIngester ingester = ingester(1, 4, 1);
+        AtomicInteger writing = new AtomicInteger();
+        AtomicInteger maxWriting = new AtomicInteger();
+        when(bulk.execute()).then(invocation -> {
+            maxWriting.accumulateAndGet(writing.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            writing.decrementAndGet();
+            return BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList());
+        });
+        String line = "{\"language\":\"Java\",\"version\":7,\"jvmBased\":true}";
+
+        // Two requests, each allowed several batches in flight
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            Future<IngestReport> first = requests.submit(() -> ingester.ingest(input(line, line, line, line)));
+            Future<IngestReport> second = requests.submit(() -> ingester.ingest(input(line, line, line, line)));
+
+            assertThat(first.get().getWritten() + second.get().getWritten()).isEqualTo(8);
+        } finally {
+            requests.shutdownNow();
+            ingester.stop();
+        }
+        assertThat(maxWriting.get()).isEqualTo(1);
+    }
+
+    private static ByteArrayInputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.index.IndexManager;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class IndexManagerTests {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Test
+    public void declaredIndexesAreCreated() {
+        assertThat(getIndexKeys()).contains("language,version", "version");
+    }
+
+    @Test
+    public void frequentShapesAreIndexed() {
+        QueryPlanCache queryPlans = new QueryPlanCache(10);
+        IndexManager indexManager = new IndexManager(operations, queryPlans, true, 2);
+        Filter[] filters = {new LanguageFilter("version", "gte", 7, null, null),
+                new LanguageFilter("isJvmBased", "eq", "true", null, null)};
+
+        // Not used often enough
+        queryPlans.getPlan(filters).bind(filters);
+        indexManager.reviewIndexes();
+
+        assertThat(getIndexKeys()).doesNotContain("isJvmBased,version");
+
+        // Equality before range
+        queryPlans.getPlan(filters).bind(filters);
+        indexManager.reviewIndexes();
+
+        try {
+            assertThat(getIndexKeys()).contains("isJvmBased,version");
+        } finally {
+            operations.indexOps(Language.class).dropIndex("isJvmBased_1_version_1");
+        }
+    }
+
+    private List<String> getIndexKeys() {
+        return operations.indexOps(Language.class).getIndexInfo().stream()
+                .map(IndexInfo::getIndexFields)
+                .map(fields -> fields.stream().map(IndexField::getKey).collect(Collectors.joining(",")))
+                .collect(Collectors.toList());
+    }
+
+}
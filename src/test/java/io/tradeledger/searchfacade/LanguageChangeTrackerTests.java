@@ -0,0 +1,38 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import io.tradeledger.searchfacade.repository.CollectionVersion;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LanguageChangeTrackerTests {
+
+    private static final LanguageReplica NO_REPLICA = new LanguageReplica(null, false, 0, 0, 0);
+
+    @Test
+    public void versionChangesOnWrites() {
+        LanguageChangeTracker tracker = new LanguageChangeTracker(NO_REPLICA, 60);
+        CollectionVersion initial = tracker.getVersion();
+
+        assertThat(tracker.getVersion().getNumber()).isEqualTo(initial.getNumber());
+        assertThat(tracker.changedSince(initial.getNumber())).isFalse();
+
+        tracker.changed();
+        CollectionVersion changed = tracker.getVersion();
+
+        assertThat(changed.getNumber()).isGreaterThan(initial.getNumber());
+        assertThat(changed.getModifiedAt()).isGreaterThanOrEqualTo(initial.getModifiedAt());
+        assertThat(tracker.changedSince(initial.getNumber())).isTrue();
+        assertThat(tracker.changedSince(changed.getNumber())).isFalse();
+    }
+
+    @Test
+    public void versionExpiresWithoutChangeStream() {
+        LanguageChangeTracker tracker = new LanguageChangeTracker(NO_REPLICA, 0);
+
+        assertThat(tracker.getVersion().getNumber()).isNotEqualTo(tracker.getVersion().getNumber());
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageColumns;
+import io.tradeledger.searchfacade.repository.Projection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LanguageColumnsTests {
+
+    private static final ObjectId JAVA_8 = new ObjectId();
+    private static final ObjectId JAVA_7 = new ObjectId();
+    private static final ObjectId KOTLIN = new ObjectId();
+
+    private final LanguageColumns columns = LanguageColumns.of(Arrays.asList(
+            new Document("_id", JAVA_8).append("language", "Java").append("version", 8).append("isJvmBased", "true"),
+            new Document("_id", JAVA_7).append("language", "Java").append("version", 7).append("isJvmBased", "true"),
+            new Document("_id", KOTLIN).append("language", "Kotlin").append("version", 2).append("isJvmBased", true)),
+            10);
+
+    @Test
+    public void filtersMatchAsInMongo() {
+        assertThat(match(new LanguageFilter("language", "eq", "Java", null, null)))
+                .containsExactly("Java 8", "Java 7");
+        assertThat(match(new LanguageFilter("version", "eq", null, 2, 7)))
+                .containsExactly("Java 7", "Kotlin 2");
+        assertThat(match(new LanguageFilter("version", "gte", 7, null, null),
+                new LanguageFilter("language", "lte", "Java", null, null)))
+                .containsExactly("Java 8", "Java 7");
+
+        // Booleans only match booleans, and strings only strings
+        assertThat(match(new LanguageFilter("isJvmBased", "eq", "true", null, null)))
+                .containsExactly("Java 8", "Java 7");
+        assertThat(match(new LanguageFilter("isJvmBased", "eq", true, null, null)))
+                .containsExactly("Kotlin 2");
+
+        // Values of another type never match
+        assertThat(match(new LanguageFilter("version", "eq", "8", null, null))).isEmpty();
+        assertThat(match(new LanguageFilter("language", "eq", 8, null, null))).isEmpty();
+        assertThat(match(new LanguageFilter("isJvmBased", "eq", 1, null, null))).isEmpty();
+    }
+
+    @Test
+    public void numbersMatchAcrossTypes() {
+        assertThat(match(new LanguageFilter("version", "eq", 7.0, null, null))).containsExactly("Java 7");
+        assertThat(match(new LanguageFilter("version", "eq", 7.5, null, null))).isEmpty();
+        assertThat(match(new LanguageFilter("version", "gte", 2.5, null, null),
+                new LanguageFilter("version", "lte", 8L, null, null))).containsExactly("Java 8", "Java 7");
+        assertThat(match(new LanguageFilter("version", "gte", Long.MAX_VALUE, null, null))).isEmpty();
+        assertThat(match(new LanguageFilter("version", "lte", Double.NaN, null, null))).isEmpty();
+    }
+
+    @Test
+    public void conjunctionsAreIntersected() {
+        assertThat(match(new LanguageFilter("isJvmBased", "eq", "true", null, null),
+                new LanguageFilter("version", "eq", null, 7, 8),
+                new LanguageFilter("language", "eq", "Java", null, null)))
+                .containsExactly("Java 8", "Java 7");
+        assertThat(match(new LanguageFilter("language", "eq", "Kotlin", null, null),
+                new LanguageFilter("version", "gte", 3, null, null))).isEmpty();
+        assertThat(match()).containsExactly("Java 8", "Java 7", "Kotlin 2");
+    }
+
+    @Test
+    public void bitmapsMatchIndexes() {
+        Filter[][] searches = {
+                {},
+                {new LanguageFilter("language", "eq", "Java", null, null)},
+                {new LanguageFilter("version", "eq", null, 2, 7), new LanguageFilter("isJvmBased", "eq", "true", null, null)},
+                {new LanguageFilter("version", "gte", 7, null, null), new LanguageFilter("language", "lte", "Java", null, null),
+                        new LanguageFilter("isJvmBased", "eq", "true", null, null)},
+                {new LanguageFilter("language", "eq", "Kotlin", null, null), new LanguageFilter("version", "gte", 3, null, null)}};
+
+        // Twice, to read the cached bitmaps
+        for (int i = 0; i < 2; i++) {
+            for (Filter[] filters : searches) {
+                int[] rows = columns.find(filters);
+
+                assertThat(columns.match(filters).toArray()).containsExactly(rows);
+                assertThat(columns.count(filters)).hasValue(rows.length);
+            }
+        }
+    }
+
+    @Test
+    public void unsupportedFiltersAreReported() {
+        assertThat(columns.find(new Filter[]{new LanguageFilter("isJvmBased", "gte", true, null, null)}))
+                .isNull();
+        assertThat(columns.find(new Filter[]{new LanguageFilter("name", "eq", "Java", null, null)}))
+                .isNull();
+        assertThat(columns.match(new Filter[]{new LanguageFilter("name", "eq", "Java", null, null)})).isNull();
+        assertThat(columns.count(new Filter[]{new LanguageFilter("language", "eq", "Java", null, null),
+                new LanguageFilter("isJvmBased", "gte", true, null, null)})).isEmpty();
+    }
+
+    @Test
+    public void documentsAreReadAsMongoReadsThem() {
+        Language kotlin = columns.get(2, Projection.all());
+
+        assertThat(kotlin.getId()).isEqualTo(KOTLIN.toHexString());
+        assertThat(kotlin.getJvmBased()).isTrue();
+        assertThat(columns.get(0, Projection.all()).getJvmBased()).isTrue();
+
+        Language projected = columns.get(0, Projection.of(new LanguageSchema("isJvmBased:string"), new String[]{"version"}));
+
+        assertThat(projected.getVersion()).isEqualTo(8);
+        assertThat(projected.getId()).isNull();
+        assertThat(projected.getLanguage()).isNull();
+    }
+
+    @Test
+    public void updatesReturnNewCopies() {
+        LanguageColumns updated = columns
+                .withDocument(new Document("_id", JAVA_7).append("language", "Java").append("version", 11))
+                .withoutDocument(KOTLIN.toHexString())
+                .withDocument(new Document("_id", new ObjectId()).append("language", "Scala").append("version", 2));
+
+        assertThat(updated.size()).isEqualTo(3);
+        assertThat(columns.size()).isEqualTo(3);
+        assertThat(read(updated, updated.find(new Filter[]{new LanguageFilter("version", "gte", 2, null, null)})))
+                .containsExactly("Java 8", "Java 11", "Scala 2");
+    }
+
+    @Test
+    public void batchesOfChangesMatchSingleChanges() {
+        ObjectId scala = new ObjectId();
+        Map<String, Document> changes = new LinkedHashMap<>();
+        changes.put(JAVA_7.toHexString(), new Document("_id", JAVA_7).append("language", "Java").append("version", 11));
+        changes.put(KOTLIN.toHexString(), null);
+        changes.put(scala.toHexString(), new Document("_id", scala).append("language", "Scala").append("version", 2));
+        changes.put(new ObjectId().toHexString(), null);
+
+        LanguageColumns updated = columns.withChanges(changes);
+
+        LanguageColumns sequential = columns
+                .withDocument(changes.get(JAVA_7.toHexString()))
+                .withoutDocument(KOTLIN.toHexString())
+                .withDocument(changes.get(scala.toHexString()));
+
+        assertThat(read(updated, updated.find(new Filter[0])))
+                .isEqualTo(read(sequential, sequential.find(new Filter[0])));
+        assertThat(read(updated, updated.find(new Filter[]{new LanguageFilter("version", "gte", 2, null, null)})))
+                .containsExactly("Java 8", "Java 11", "Scala 2");
+        assertThat(columns.withChanges(Collections.singletonMap(new ObjectId().toHexString(), null)))
+                .isSameAs(columns);
+    }
+
+    @Test
+    public void irregularValuesAreDetected() {
+        assertThat(columns.isRegular()).isTrue();
+        assertThat(columns.withDocument(new Document("_id", new ObjectId()).append("version", 8.5)).isRegular())
+                .isFalse();
+    }
+
+    private List<String> match(Filter... filters) {
+        return read(columns, columns.find(filters));
+    }
+
+    private static List<String> read(LanguageColumns columns, int[] rows) {
+        return Arrays.stream(rows)
+                .mapToObj(row -> columns.get(row, Projection.all()))
+                .map(language -> language.getLanguage() + " " + language.getVersion())
+                .collect(Collectors.toList());
+    }
+
+}
@@ -1,28 +1,68 @@
 package io.tradeledger.searchfacade;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.tradeledger.searchfacade.admission.AdmissionInterceptor;
+import io.tradeledger.searchfacade.admission.QueryCostEstimator;
+import io.tradeledger.searchfacade.admission.QueryGuard;
+import io.tradeledger.searchfacade.admission.RateLimiter;
+import io.tradeledger.searchfacade.cache.LanguageCaches;
+import io.tradeledger.searchfacade.cache.LanguageResponseCache;
 import io.tradeledger.searchfacade.controller.LanguageController;
+import io.tradeledger.searchfacade.exception.QueryTooExpensiveException;
+import io.tradeledger.searchfacade.exception.TooManyRequestsException;
 import io.tradeledger.searchfacade.filter.Filter;
 import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
 import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.model.LanguageGroup;
+import io.tradeledger.searchfacade.repository.CollectionVersion;
+import io.tradeledger.searchfacade.repository.ContinuationToken;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
 import io.tradeledger.searchfacade.repository.LanguageRepository;
+import io.tradeledger.searchfacade.repository.Projection;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -35,6 +75,66 @@ public class LanguageControllerTests {
     @MockBean
     private LanguageRepository languageRepository;
 
+    @MockBean
+    private LanguageChangeTracker changeTracker;
+
+    @MockBean
+    private SearchMetrics searchMetrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    @MockBean
+    private QueryCostEstimator costEstimator;
+
+    @MockBean
+    private QueryGuard guard;
+
+    private static final SearchPageRequest FIRST_PAGE = SearchPageRequest.first(100);
+    private static final CollectionVersion VERSION = new CollectionVersion(1, 1_500_000_000_000L);
+    private static final CollectionVersion CHANGED_VERSION = new CollectionVersion(2, 1_500_000_001_000L);
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private LanguageSchema schema;
+
+    @TestConfiguration
+    static class ResponseCacheConfig {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(
+                    LanguageCaches.FRAGMENTS, LanguageCaches.SEARCH_RESPONSES, LanguageCaches.VALIDATORS);
+        }
+
+        @Bean
+        public LanguageResponseCache languageResponseCache(CacheManager cacheManager, ObjectMapper objectMapper) {
+            return new LanguageResponseCache(cacheManager, objectMapper);
+        }
+
+    }
+
+    @TestConfiguration
+    static class SchemaConfig {
+
+        @Bean
+        public LanguageSchema languageSchema() {
+            return new LanguageSchema("isJvmBased:string");
+        }
+
+    }
+
+    @Before
+    public void setUp() {
+        // The context and its caches are shared between tests
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        when(changeTracker.getVersion()).thenReturn(VERSION);
+        when(languageRepository.search(any(), any()))
+                .thenReturn(new SearchPage<>(Collections.emptyList(), null));
+    }
+
     @Test
     public void findLanguageById() throws Exception {
         when(languageRepository.findById("1"))
@@ -52,6 +152,153 @@ public class LanguageControllerTests {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void conditionalRequests() throws Exception {
+        when(languageRepository.findById("1"))
+                .thenReturn(Optional.of(new Language("1", "Java", 8, true)));
+        when(languageRepository.search(any(), any()))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("1", "Java", 8, true)), null));
+        String searchUrl = "/languages/search?filter={filter}";
+        String filter = "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}";
+
+        String languageTag = mvc.perform(get("/languages/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String searchTag = mvc.perform(get(searchUrl, filter))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}]"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertThat(languageTag).startsWith("\"").isNotEqualTo(searchTag);
+
+        // Unchanged
+        mvc.perform(get("/languages/1").header("If-None-Match", languageTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mvc.perform(get(searchUrl, filter).header("If-None-Match", searchTag))
+                .andExpect(status().isNotModified());
+        // Answered without a query
+        verify(languageRepository, times(1)).findById("1");
+        verify(languageRepository, times(1)).search(any(), any());
+
+        // Changed
+        when(changeTracker.getVersion()).thenReturn(CHANGED_VERSION);
+        when(languageRepository.findById("1"))
+                .thenReturn(Optional.of(new Language("1", "Java", 9, true)));
+
+        mvc.perform(get("/languages/1").header("If-None-Match", languageTag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"1\",\"language\":\"Java\",\"version\":9,\"jvmBased\":true}"));
+    }
+
+    @Test
+    public void conditionalRequestsAfterWrites() throws Exception {
+        when(languageRepository.findById("1"))
+                .thenReturn(Optional.of(new Language("1", "Java", 8, true)));
+
+        MvcResult result = mvc.perform(get("/languages/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().dateValue("Last-Modified", VERSION.getModifiedAt()))
+                .andReturn();
+        String languageTag = result.getResponse().getHeader("ETag");
+        String lastModified = result.getResponse().getHeader("Last-Modified");
+
+        mvc.perform(get("/languages/1").header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/languages/1").header("If-None-Match", "\"other\", W/" + languageTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", languageTag));
+        verify(languageRepository, times(1)).findById("1");
+
+        // Something else changed: looked up again, but still not modified
+        when(changeTracker.getVersion()).thenReturn(CHANGED_VERSION);
+
+        mvc.perform(get("/languages/1").header("If-None-Match", languageTag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/languages/1").header("If-Modified-Since", lastModified))
+                .andExpect(status().isOk());
+        verify(languageRepository, times(3)).findById("1");
+    }
+
+    @Test
+    public void conditionalRequestsForUnknownLanguages() throws Exception {
+        String lastModified = mvc.perform(get("/languages/search?filter={filter}",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("Last-Modified");
+
+        // Not found, whenever the collection last changed
+        mvc.perform(get("/languages/INVALID_ID").header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/languages/INVALID_ID").header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void languagesLookedUpAcrossWritesAreNotRevalidated() throws Exception {
+        // The collection is written while the language is looked up
+        when(languageRepository.findById("1")).thenAnswer(invocation -> {
+            when(changeTracker.getVersion()).thenReturn(CHANGED_VERSION);
+            when(changeTracker.changedSince(VERSION.getNumber())).thenReturn(true);
+            return Optional.of(new Language("1", "Java", 8, true));
+        });
+        mvc.perform(get("/languages/1")).andExpect(status().isOk());
+
+        assertThat((Map<?, ?>) cacheManager.getCache(LanguageCaches.VALIDATORS).getNativeCache()).isEmpty();
+    }
+
+    @Test
+    public void pagesSearchedAcrossWritesAreNotReused() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq", "Java", null, null)};
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .build()
+                .toUri();
+
+        // The collection is written, and the caches cleared, while the first search runs
+        when(languageRepository.search(filters, FIRST_PAGE)).thenAnswer(invocation -> {
+            when(changeTracker.getVersion()).thenReturn(CHANGED_VERSION);
+            when(changeTracker.changedSince(VERSION.getNumber())).thenReturn(true);
+            cacheManager.getCache(LanguageCaches.SEARCH_RESPONSES).clear();
+            return new SearchPage<>(Collections.singletonList(new Language("1", "Java", 8, true)), null);
+        });
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}]"));
+        // Nor is it revalidated at the version read before the search
+        assertThat((Map<?, ?>) cacheManager.getCache(LanguageCaches.VALIDATORS).getNativeCache()).isEmpty();
+
+        // The page searched before the write is not returned after it
+        when(languageRepository.search(filters, FIRST_PAGE))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("1", "Java", 9, true)), null));
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(content().string("[{\"id\":\"1\",\"language\":\"Java\",\"version\":9,\"jvmBased\":true}]"));
+        verify(languageRepository, times(2)).search(filters, FIRST_PAGE);
+    }
+
+    @Test
+    public void findLanguagesByIds() throws Exception {
+        Map<String, Language> found = new HashMap<>();
+        found.put("1", new Language("1", "Java", 8, true));
+        found.put("2", new Language("2", "Java", 7, true));
+        when(languageRepository.findAllByIds(any())).thenReturn(found);
+
+        // Request order, missing IDs reported
+        mvc.perform(post("/languages/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"2\",\"INVALID_ID\",\"1\"]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"languages\":[" +
+                        "{\"id\":\"2\",\"language\":\"Java\",\"version\":7,\"jvmBased\":true}," +
+                        "{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}]," +
+                        "\"missing\":[\"INVALID_ID\"]}"));
+
+        // Too many IDs
+        mvc.perform(post("/languages/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + String.join(",", Collections.nCopies(1001, "\"1\"")) + "]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void searchWithValueFilter() throws Exception {
         Filter[] filters = {new LanguageFilter("language", "eq",
@@ -59,7 +306,7 @@ public class LanguageControllerTests {
 
         List<Language> languages = Collections.singletonList(new Language("1",
                 "Java", 8, true));
-        when(languageRepository.search(filters)).thenReturn(languages);
+        when(languageRepository.search(filters, FIRST_PAGE)).thenReturn(new SearchPage<>(languages, null));
 
         URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
                 .path("search")
@@ -95,7 +342,7 @@ public class LanguageControllerTests {
                         "Java", 8, true),
                 new Language("2",
                         "Java", 7, true));
-        when(languageRepository.search(filters)).thenReturn(languages);
+        when(languageRepository.search(filters, FIRST_PAGE)).thenReturn(new SearchPage<>(languages, null));
 
         URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
                 .path("search")
@@ -147,7 +394,7 @@ public class LanguageControllerTests {
                         "Java", 8, true),
                 new Language("2",
                         "Java", 7, true));
-        when(languageRepository.search(filters)).thenReturn(languages);
+        when(languageRepository.search(filters, FIRST_PAGE)).thenReturn(new SearchPage<>(languages, null));
 
         URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
                 .path("search")
@@ -180,6 +427,49 @@ public class LanguageControllerTests {
                 .andExpect(content().string("[]"));
     }
 
+    @Test
+    public void countSearchResults() throws Exception {
+        when(languageRepository.count(any(Filter[].class))).thenReturn(3L);
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":7}")
+                .build()
+                .toUri();
+
+        mvc.perform(head(targetUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string(LanguageController.TOTAL_COUNT, "3"))
+                .andExpect(content().string(""));
+
+        targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"INVALID_OPERATOR\",\"value\":7}")
+                .build()
+                .toUri();
+
+        mvc.perform(head(targetUrl)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void countAndGroup() throws Exception {
+        when(languageRepository.count(any(Filter[].class))).thenReturn(4L);
+        when(languageRepository.group(any(), any(), any()))
+                .thenReturn(Collections.singletonList(new LanguageGroup("true", 4, 2, 8)));
+
+        mvc.perform(get("/languages/count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"count\":4}"));
+
+        mvc.perform(get("/languages/group?by=isJvmBased&field=version"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"value\":\"true\",\"count\":4,\"min\":2,\"max\":8}]"));
+
+        // Missing attribute to group by
+        mvc.perform(get("/languages/group")).andExpect(status().isBadRequest());
+    }
+
     @Test
     public void searchWithInvalidFilterField() throws Exception {
         URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
@@ -201,7 +491,8 @@ public class LanguageControllerTests {
                 .build()
                 .toUri();
 
-        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
+        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest())
+                .andExpect(content().string("Cannot parse parameters: Invalid operator: INVALID_OPERATOR"));
     }
 
     @Test
@@ -260,4 +551,299 @@ public class LanguageControllerTests {
         mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void streamSearchResults() throws Exception {
+        Filter[] filters = {new LanguageFilter("version", "eq",
+                null, 7, 8)};
+
+        when(languageRepository.stream(filters, Projection.all())).thenReturn(Stream.of(new Language("1",
+                        "Java", 8, true),
+                new Language("2",
+                        "Java", 7, true)));
+
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"eq\",\"range\":{\"from\":7,\"to\":8}}")
+                .build()
+                .toUri();
+        String expected = "{\"id\":\"1\",\"language\":\"Java\"" +
+                ",\"version\":8,\"jvmBased\":true}\n" +
+                "{\"id\":\"2\",\"language\":\"Java\"" +
+                ",\"version\":7,\"jvmBased\":true}\n";
+
+        MvcResult result = mvc.perform(get(targetUrl).accept(LanguageController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().contentType(LanguageController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(expected));
+    }
+
+    @Test
+    public void streamOverBudgetReturnsFirstPage() throws Exception {
+        Filter[] filters = {new LanguageFilter("version", "gte", 0, null, null)};
+        when(guard.mustPaginate(filters, SearchPageRequest.first(100))).thenReturn(true);
+        when(languageRepository.search(filters, SearchPageRequest.first(100)))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("1", "Java", 8, true)),
+                        new ContinuationToken("_id", "1", "1").encode()));
+        String filter = "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":0}";
+
+        MvcResult result = mvc.perform(get("/languages/search?filter={filter}", filter)
+                .accept(LanguageController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(header().string(LanguageController.NEXT_PAGE_TOKEN,
+                        new ContinuationToken("_id", "1", "1").encode()))
+                .andExpect(content().string("{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}\n"));
+        verify(languageRepository, times(0)).stream(any(), any());
+    }
+
+    @Test
+    public void rejectsQueriesOverBudget() throws Exception {
+        doThrow(new QueryTooExpensiveException("attribute isJvmBased is not indexed"))
+                .when(guard).check(any(), any());
+        doThrow(new QueryTooExpensiveException("attribute isJvmBased is not indexed"))
+                .when(guard).check(any());
+
+        mvc.perform(get("/languages/search?filter={filter}",
+                "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Query too expensive: attribute isJvmBased is not indexed"));
+        mvc.perform(get("/languages/count"))
+                .andExpect(status().isBadRequest());
+        verify(languageRepository, times(0)).search(any(), any());
+        verify(languageRepository, times(0)).count(any(Filter[].class));
+    }
+
+    @Test
+    public void streamWithInvalidOperator() throws Exception {
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"INVALID_OPERATOR\",\"value\":\"Java\"}")
+                .build()
+                .toUri();
+
+        mvc.perform(get(targetUrl).accept(LanguageController.APPLICATION_NDJSON_VALUE))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchWithFields() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq",
+                "Java", null, null)};
+
+        when(languageRepository.search(filters, FIRST_PAGE.withProjection(
+                Projection.of(schema, new String[]{"language", "version"}))))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language(null,
+                        "Java", 8, null)), null));
+
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("fields", "language,version")
+                .build()
+                .toUri();
+
+        // Fields left out are not written
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(content().string("[{\"language\":\"Java\",\"version\":8}]"));
+
+        targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("fields", "$where")
+                .build()
+                .toUri();
+
+        // Invalid field
+        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
+        mvc.perform(get("/languages/search?filter={filter}&fields=name",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Cannot parse parameters: Invalid field: name"));
+    }
+
+    @Test
+    public void searchWithFieldsAsReturned() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq", "Java", null, null)};
+        when(languageRepository.search(filters, FIRST_PAGE.withProjection(
+                Projection.of(schema, new String[]{"isJvmBased"}))))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language(null,
+                        null, null, true)), null));
+
+        // Named as in responses
+        mvc.perform(get("/languages/search?filter={filter}&fields=jvmBased",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"jvmBased\":true}]"));
+    }
+
+    @Test
+    public void searchWithoutFieldsWritesNulls() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq", "Java", null, null)};
+        when(languageRepository.search(filters, FIRST_PAGE))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("1",
+                        "Java", 8, null)), null));
+
+        // Only projections leave fields out
+        mvc.perform(get("/languages/search?filter={filter}",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "[{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":null}]"));
+    }
+
+    @Test
+    public void searchWithPageToken() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq",
+                "Java", null, null)};
+        String firstToken = new ContinuationToken("version", 7, "2").encode();
+        String secondToken = new ContinuationToken("version", 8, "1").encode();
+
+        when(languageRepository.search(filters, SearchPageRequest.of(schema, "version", null, 1)))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("2",
+                        "Java", 7, true)), firstToken));
+        when(languageRepository.search(filters, SearchPageRequest.of(schema, null, firstToken, 1)))
+                .thenReturn(new SearchPage<>(Collections.singletonList(new Language("1",
+                        "Java", 8, true)), secondToken));
+
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("sort", "version")
+                .queryParam("size", 1)
+                .build()
+                .toUri();
+
+        // First page
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(header().string(LanguageController.NEXT_PAGE_TOKEN, firstToken))
+                .andExpect(content().string("[{\"id\":\"2\",\"language\":\"Java\"" +
+                        ",\"version\":7,\"jvmBased\":true}]"));
+
+        targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("size", 1)
+                .queryParam("pageToken", firstToken)
+                .build()
+                .toUri();
+
+        // Second page, sorted by the attribute carried in the token
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(header().string(LanguageController.NEXT_PAGE_TOKEN, secondToken))
+                .andExpect(content().string("[{\"id\":\"1\",\"language\":\"Java\"" +
+                        ",\"version\":8,\"jvmBased\":true}]"));
+    }
+
+    @Test
+    public void searchWithInvalidSort() throws Exception {
+        String filter = "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}";
+
+        mvc.perform(get("/languages/search?filter={filter}&sort={sort}", filter, "$where"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Cannot parse parameters: Invalid sort attribute: $where"));
+        mvc.perform(get("/languages/search?filter={filter}&sort={sort}", filter, "name"))
+                .andExpect(status().isBadRequest());
+        // Tokens are checked alike, whether sent with the search or streamed
+        mvc.perform(get("/languages/search?filter={filter}&pageToken={token}", filter,
+                new ContinuationToken("$gt", 7, "2").encode()))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/languages/search?filter={filter}&pageToken={token}", filter,
+                new ContinuationToken("$gt", 7, "2").encode())
+                .accept(LanguageController.APPLICATION_NDJSON_VALUE))
+                .andExpect(status().isBadRequest());
+        verify(languageRepository, times(0)).search(any(), any());
+    }
+
+    @Test
+    public void searchWithPageSizeAboveMaximum() throws Exception {
+        Filter[] filters = {new LanguageFilter("language", "eq",
+                "Java", null, null)};
+
+        when(languageRepository.search(filters, FIRST_PAGE)).thenReturn(new SearchPage<>(
+                Collections.singletonList(new Language("1", "Java", 8, true)), null));
+
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("size", 100000)
+                .build()
+                .toUri();
+
+        // Capped at the configured maximum, last page
+        mvc.perform(get(targetUrl)).andExpect(status().isOk())
+                .andExpect(header().doesNotExist(LanguageController.NEXT_PAGE_TOKEN))
+                .andExpect(content().string("[{\"id\":\"1\",\"language\":\"Java\"" +
+                        ",\"version\":8,\"jvmBased\":true}]"));
+    }
+
+    @Test
+    public void rejectsRequestsOverRateLimit() throws Exception {
+        when(costEstimator.getCost(any())).thenReturn(3.5);
+        doThrow(new TooManyRequestsException("rate limit exceeded", 2))
+                .when(rateLimiter).acquire(eq("key:limited"), anyDouble());
+
+        mvc.perform(get("/languages/search?filter={filter}",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .header(AdmissionInterceptor.API_KEY, "limited"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+        verify(rateLimiter).acquire("key:limited", 3.5);
+
+        // Other clients are admitted
+        mvc.perform(get("/languages/search?filter={filter}",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .header(AdmissionInterceptor.API_KEY, "other"))
+                .andExpect(status().isOk());
+        verify(rateLimiter).acquire("key:other", 3.5);
+    }
+
+    @Test
+    public void searchWithInvalidPage() throws Exception {
+        // Invalid token
+        URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("pageToken", "INVALID_TOKEN")
+                .build()
+                .toUri();
+
+        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
+
+        // Token does not match sort
+        targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("sort", "language")
+                .queryParam("pageToken", new ContinuationToken("version", 7, "2").encode())
+                .build()
+                .toUri();
+
+        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
+
+        // Invalid size
+        targetUrl = UriComponentsBuilder.fromUriString("/languages/")
+                .path("search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("size", 0)
+                .build()
+                .toUri();
+
+        mvc.perform(get(targetUrl)).andExpect(status().isBadRequest());
+    }
+
 }
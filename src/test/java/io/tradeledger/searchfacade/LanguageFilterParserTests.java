@@ -0,0 +1,152 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.AttributeType;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.FilterOperator;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageFilterParser;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.filter.OrFilter;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LanguageFilterParserTests {
+
+    private static final LanguageSchema SCHEMA = new LanguageSchema("isJvmBased:string");
+
+    private static final String LANGUAGE = "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}";
+    private static final String VERSION = "{\"operator\":\"gte\",\"value\":7,\"attribute\":\"version\"}";
+    private static final String RANGE = "{\"attribute\":\"version\",\"operator\":\"eq\",\"range\":{\"from\":7,\"to\":8}}";
+
+    @Test
+    public void parsesSingleAndSeveralValues() {
+        assertThat(LanguageFilterParser.parse(SCHEMA, LANGUAGE))
+                .containsExactly(new LanguageFilter("language", "eq", "Java", null, null));
+
+        Filter[] filters = LanguageFilterParser.parse(SCHEMA, LANGUAGE + ", " + VERSION, RANGE,
+                "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}");
+
+        assertThat(filters).containsExactly(
+                new LanguageFilter("language", "eq", "Java", null, null),
+                new LanguageFilter("version", FilterOperator.GTE, 7, null, null),
+                new LanguageFilter("version", "eq", null, 7, 8),
+                new LanguageFilter("isJvmBased", "eq", "true", null, null));
+        assertThat(filters[2].isRange()).isTrue();
+        assertThat(LanguageFilterParser.parse(SCHEMA)).isEmpty();
+    }
+
+    @Test
+    public void coercesValuesToStoredTypes() {
+        assertThat(SCHEMA.getTypes()).containsOnlyKeys("language", "version", "isJvmBased");
+        assertThat(SCHEMA.getType("isJvmBased")).isEqualTo(AttributeType.STRING);
+        assertThat(new LanguageSchema().getType("isJvmBased")).isEqualTo(AttributeType.BOOLEAN);
+
+        assertThat(LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"eq\",\"value\":\"8\"}",
+                "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}"))
+                .containsExactly(new LanguageFilter("version", "eq", 8, null, null),
+                        new LanguageFilter("isJvmBased", "eq", "true", null, null));
+        assertThat(LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":7.0}"))
+                .containsExactly(new LanguageFilter("version", FilterOperator.GTE, 7, null, null));
+
+        // Unknown attribute
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"name\",\"operator\":\"eq\",\"value\":\"Java\"}"))
+                .isInstanceOf(InvalidParameterException.class)
+                .hasMessageContaining("Unknown attribute: name");
+        // Not a version
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"eq\",\"value\":\"eight\"}"))
+                .isInstanceOf(InvalidParameterException.class)
+                .hasMessageContaining("Invalid value for version: eight");
+        // Range on a string
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"range\":{\"from\":1,\"to\":2}}"))
+                .isInstanceOf(InvalidParameterException.class);
+    }
+
+    @Test
+    public void parsesInAndOrGroups() {
+        assertThat(LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"in\",\"value\":[\"8\",11]}"))
+                .containsExactly(new LanguageFilter("version", FilterOperator.IN, Arrays.asList(8, 11), null, null));
+
+        // Equalities on the same attribute are folded into in, without duplicates
+        assertThat(LanguageFilterParser.parse(SCHEMA, "{\"or\":[" + LANGUAGE + "," +
+                "{\"attribute\":\"language\",\"operator\":\"in\",\"value\":[\"Kotlin\",\"Java\"]}]}"))
+                .containsExactly(new LanguageFilter("language", FilterOperator.IN,
+                        Arrays.asList("Java", "Kotlin"), null, null));
+
+        // Across attributes, or ranges, the group is kept
+        Filter[] filters = LanguageFilterParser.parse(SCHEMA, "{\"or\":[" + LANGUAGE + "," + VERSION + "]}," + RANGE);
+        assertThat(filters).containsExactly(
+                new OrFilter(new LanguageFilter("language", "eq", "Java", null, null),
+                        new LanguageFilter("version", FilterOperator.GTE, 7, null, null)),
+                new LanguageFilter("version", "eq", null, 7, 8));
+        assertThat(filters[0].getAttributes()).containsExactly("language", "version");
+        assertThat(filters[0].getShape()).isEqualTo("or(language:eq:string|version:gte:number)");
+
+        // A single value for in, or a list for another operator
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"language\",\"operator\":\"in\",\"value\":\"Java\"}"))
+                .isInstanceOf(InvalidParameterException.class);
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":[\"Java\"]}"))
+                .isInstanceOf(InvalidParameterException.class);
+        // Empty, nested, or with other fields
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, "{\"or\":[]}"))
+                .isInstanceOf(InvalidParameterException.class);
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, "{\"or\":[{\"or\":[" + LANGUAGE + "]}]}"))
+                .isInstanceOf(InvalidParameterException.class)
+                .hasMessageContaining("Nested or groups are not allowed.");
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"language\",\"or\":[" + LANGUAGE + "]}"))
+                .isInstanceOf(InvalidParameterException.class);
+    }
+
+    @Test
+    public void resolvesAttributeNamesToTheSchema() {
+        String attribute = LanguageFilterParser.parse(SCHEMA, LANGUAGE)[0].getAttribute();
+
+        assertThat(LanguageFilterParser.parse(SCHEMA, LANGUAGE)[0].getAttribute()).isSameAs(attribute);
+        assertThat(SCHEMA.getTypes().keySet()).anySatisfy(name -> assertThat(name).isSameAs(attribute));
+    }
+
+    @Test
+    public void invalidFiltersAreRejected() {
+        // Invalid operator
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"language\",\"operator\":\"ne\",\"value\":\"Java\"}"))
+                .isInstanceOf(InvalidParameterException.class)
+                .hasMessageContaining("Invalid operator: ne");
+        // Both value and range
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"eq\",\"value\":7,\"range\":{\"from\":7,\"to\":8}}"))
+                .isInstanceOf(InvalidParameterException.class);
+        // Range with another operator than eq
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"gte\",\"range\":{\"from\":7,\"to\":8}}"))
+                .isInstanceOf(InvalidParameterException.class);
+        // Neither value nor range
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, "{\"attribute\":\"version\",\"operator\":\"eq\"}"))
+                .isInstanceOf(InvalidParameterException.class);
+        // Unknown field
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA,
+                "{\"attribute\":\"version\",\"operator\":\"eq\",\"value\":7,\"other\":1}"))
+                .isInstanceOf(InvalidParameterException.class);
+        // Not JSON, or not an object
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, "{\"attribute\":"))
+                .isInstanceOf(InvalidParameterException.class);
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, "[" + LANGUAGE + "]"))
+                .isInstanceOf(InvalidParameterException.class);
+        assertThatThrownBy(() -> LanguageFilterParser.parse(SCHEMA, LANGUAGE + "]"))
+                .isInstanceOf(InvalidParameterException.class);
+    }
+
+}
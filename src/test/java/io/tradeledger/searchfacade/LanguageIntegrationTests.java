@@ -2,6 +2,34 @@ package io.tradeledger.searchfacade;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.admission.CollectionStatistics;
+import io.tradeledger.searchfacade.admission.QueryCostEstimator;
+import io.tradeledger.searchfacade.admission.QueryEstimate;
+import io.tradeledger.searchfacade.admission.QueryGuard;
+import io.tradeledger.searchfacade.cache.LanguageCaches;
+import io.tradeledger.searchfacade.cache.SearchKeyGenerator;
+import io.tradeledger.searchfacade.exception.QueryTooExpensiveException;
+import io.tradeledger.searchfacade.export.ExportCompression;
+import io.tradeledger.searchfacade.export.ExportFormat;
+import io.tradeledger.searchfacade.export.LanguageExporter;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.index.IndexManager;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import io.tradeledger.searchfacade.repository.LanguageChangeTracker;
+import io.tradeledger.searchfacade.repository.LanguageRepository;
+import io.tradeledger.searchfacade.repository.LanguageSearchRepositoryImpl;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
 import org.json.JSONException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -10,14 +38,35 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.*;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -29,6 +78,36 @@ public class LanguageIntegrationTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private LanguageRepository languageRepository;
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Autowired
+    private CollectionStatistics statistics;
+
+    @Autowired
+    private QueryCostEstimator costEstimator;
+
+    @Autowired
+    private IndexManager indexManager;
+
+    @Autowired
+    private LanguageExporter exporter;
+
+    @Autowired
+    private SearchKeyGenerator searchKeyGenerator;
+
+    @Autowired
+    private LanguageChangeTracker changeTracker;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private LanguageSchema schema;
+
     @Test
     public void findById() throws JSONException, IOException {
         String java8ObjectId = getJsonValue(searchForJava8(), "id");
@@ -189,6 +268,30 @@ public class LanguageIntegrationTests {
         assertThat(response.getBody()).contains(expected);
     }
 
+    @Test
+    public void searchWithValuesOfOtherTypes() {
+        // A boolean for the string stored, and a string for the number stored
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}")
+                .queryParam("filter", "{\"attribute\":\"version\",\"operator\":\"eq\",\"value\":\"8\"}")
+                .build()
+                .toUri();
+
+        assertThat(getResponse(targetUrl).getBody()).contains("\"language\":\"Java\",\"version\":8");
+
+        // Unknown attribute
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"jvmBased\",\"operator\":\"eq\",\"value\":true}")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Cannot parse parameters: Unknown attribute: jvmBased");
+    }
+
     @Test
     public void searchWithTwoFilters() {
         URI targetUrl = UriComponentsBuilder.fromUriString("/languages/")
@@ -237,6 +340,599 @@ public class LanguageIntegrationTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    @Test
+    public void searchWithInAndOrGroups() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"or\":[{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}," +
+                        "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Kotlin\"}]}")
+                .build()
+                // Brackets are not allowed unencoded in a query string
+                .encode()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+
+        // Java or Kotlin, in a single search
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+        assertThat(response.getBody()).contains("\"language\":\"Kotlin\",\"version\":2");
+        assertThat(response.getBody()).doesNotContain("Groovy");
+
+        // Across attributes, page by page: the group and the page token are both an $or
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}," +
+                        "{\"or\":[{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Groovy\"}," +
+                        "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":8}]}")
+                .queryParam("sort", "version")
+                .queryParam("size", 1)
+                .build()
+                .encode()
+                .toUri();
+        response = getResponse(targetUrl);
+        String nextPageToken = response.getHeaders().getFirst("X-Next-Page-Token");
+
+        assertThat(nextPageToken).isNotNull();
+        assertThat(response.getBody()).contains("\"language\":\"Groovy\",\"version\":3");
+
+        targetUrl = UriComponentsBuilder.fromUriString(targetUrl.toString())
+                .queryParam("pageToken", nextPageToken)
+                .build(true)
+                .toUri();
+        response = getResponse(targetUrl);
+
+        assertThat(response.getHeaders().getFirst("X-Next-Page-Token")).isNull();
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+        assertThat(response.getBody()).doesNotContain("Groovy");
+    }
+
+    @Test
+    public void searchByPage() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("sort", "version")
+                .queryParam("size", 3)
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+        String nextPageToken = response.getHeaders().getFirst("X-Next-Page-Token");
+
+        // First page, sorted by version
+        assertThat(nextPageToken).isNotNull();
+        assertThat(response.getBody()).startsWith("[{\"id\"");
+        assertThat(response.getBody()).contains("\"language\":\"Kotlin\",\"version\":2");
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(response.getBody()).doesNotContain("\"version\":8");
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("size", 3)
+                .queryParam("pageToken", nextPageToken)
+                .build()
+                .toUri();
+        response = getResponse(targetUrl);
+
+        // Last page
+        assertThat(response.getHeaders().getFirst("X-Next-Page-Token")).isNull();
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+        assertThat(response.getBody()).doesNotContain("\"version\":7");
+    }
+
+    @Test
+    public void searchByPageSortedById() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("size", 3)
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+        String nextPageToken = response.getHeaders().getFirst("X-Next-Page-Token");
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("size", 3)
+                .queryParam("pageToken", nextPageToken)
+                .build()
+                .toUri();
+
+        // Last page, with the one remaining language
+        response = getResponse(targetUrl);
+        assertThat(response.getHeaders().getFirst("X-Next-Page-Token")).isNull();
+        assertThat(response.getBody()).startsWith("[{\"id\"").doesNotContain("},{");
+    }
+
+    @Test
+    public void cacheIsInvalidatedOnWrite() {
+        URI searchUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Scala\"}")
+                .build()
+                .toUri();
+
+        // Not found, and cached as such
+        assertThat(getResponse(searchUrl).getBody()).isEqualTo("[]");
+
+        Language scala = languageRepository.save(new Language(null, "Scala", 2, true));
+        URI findUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/" + scala.getId())
+                .build()
+                .toUri();
+
+        try {
+            // Found after save
+            assertThat(getResponse(searchUrl).getBody()).contains("\"language\":\"Scala\",\"version\":2");
+            assertThat(getResponse(findUrl).getStatusCode()).isEqualTo(HttpStatus.OK);
+        } finally {
+            languageRepository.delete(scala);
+        }
+
+        // Not found after delete
+        assertThat(getResponse(searchUrl).getBody()).isEqualTo("[]");
+        assertThat(getResponse(findUrl).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void lookupsAreNotReusedAfterExternalWrites() throws IOException {
+        String java8ObjectId = getJsonValue(searchForJava8(), "id");
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/" + java8ObjectId)
+                .build()
+                .toUri();
+        assertThat(getResponse(targetUrl).getBody()).contains("\"jvmBased\":true");
+
+        // Written by another application, raising no events, and then seen by the replica
+        Document id = new Document("_id", new ObjectId(java8ObjectId));
+        operations.getCollection("language").updateOne(id, new Document("$set", new Document("isJvmBased", "false")));
+        try {
+            changeTracker.changed();
+            assertThat(getResponse(targetUrl).getBody()).contains("\"jvmBased\":false");
+        } finally {
+            operations.getCollection("language").updateOne(id, new Document("$set", new Document("isJvmBased", "true")));
+            changeTracker.changed();
+        }
+    }
+
+    @Test
+    public void searchesCachedAcrossWritesAreNotReused() {
+        Filter[] filters = {new LanguageFilter("language", "eq", "Scala", null, null)};
+        SearchPageRequest pageRequest = SearchPageRequest.first(10);
+
+        // Searched before a write, but cached after the write cleared the cache
+        Object key = searchKeyGenerator.generate(null, null, filters, pageRequest);
+        changeTracker.changed();
+        cacheManager.getCache(LanguageCaches.SEARCHES).put(key,
+                new SearchPage<>(Collections.singletonList(new Language("1", "Scala", 2, true)), null));
+
+        assertThat(languageRepository.search(filters, pageRequest).getContent()).isEmpty();
+    }
+
+    @Test
+    public void conditionalRequestsAfterWrites() {
+        URI searchUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Clojure\"}")
+                .build()
+                .toUri();
+
+        ResponseEntity<String> response = getResponse(searchUrl);
+        String eTag = response.getHeaders().getETag();
+        assertThat(eTag).isNotNull();
+        assertThat(response.getHeaders().getLastModified()).isPositive();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        HttpEntity<String> conditional = new HttpEntity<>(null, headers);
+
+        // Unchanged
+        assertThat(restTemplate.exchange(searchUrl, HttpMethod.GET, conditional, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        Language clojure = languageRepository.save(new Language(null, "Clojure", 1, true));
+        try {
+            // Changed
+            response = restTemplate.exchange(searchUrl, HttpMethod.GET, conditional, String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).contains("\"language\":\"Clojure\"");
+            assertThat(response.getHeaders().getETag()).isNotEqualTo(eTag);
+        } finally {
+            languageRepository.delete(clojure);
+        }
+    }
+
+    @Test
+    public void searchMetricsAreExported() {
+        URI searchUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Kotlin\"}")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":1}")
+                .build()
+                .toUri();
+        getResponse(searchUrl);
+
+        URI metricsUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("actuator/search")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(metricsUrl);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("\"language:eq,version:gte\"")
+                .contains("\"parse\"", "\"plan\"", "\"serialize\"", "\"documents\"")
+                .doesNotContain("Kotlin");
+    }
+
+    @Test
+    public void slowQueriesAreListed() {
+        URI slowQueriesUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("actuator/slowqueries")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(slowQueriesUrl);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).startsWith("[");
+    }
+
+    @Test
+    public void searchesAreEstimatedFromStatistics() {
+        statistics.refresh();
+        long count = operations.count(new Query(), Language.class);
+        long java = operations.count(Query.query(Criteria.where("language").is("Java")), Language.class);
+        Filter[] javaFilters = {new LanguageFilter("language", "eq", "Java", null, null)};
+        Filter[] allVersions = {new LanguageFilter("version", "gte", 0, null, null)};
+
+        // The sample holds the whole collection
+        assertThat(statistics.getCount()).isEqualTo(count);
+        assertThat(costEstimator.estimate(javaFilters).getResults()).isEqualTo(java);
+        QueryEstimate estimate = costEstimator.estimate(allVersions);
+        assertThat(estimate.getResults()).isEqualTo(count);
+        assertThat(estimate.getScanned()).isEqualTo(count);
+        assertThat(costEstimator.estimate(new Filter[]{new LanguageFilter("version", "gte", 1000, null, null)})
+                .getResults()).isEqualTo(0);
+
+        // A page sorted by an index is read until it is full
+        SearchPageRequest firstPage = SearchPageRequest.first(1);
+        assertThat(costEstimator.estimate(allVersions, firstPage).getScanned()).isEqualTo(2);
+        assertThat(costEstimator.estimate(allVersions, SearchPageRequest.of(schema, "isJvmBased", null, 1)).getScanned())
+                .isEqualTo(count);
+
+        // Over the result budget, streams are rejected or paginated
+        assertThatThrownBy(() -> new QueryGuard(costEstimator, indexManager, false, 0, count - 1, false)
+                .mustPaginate(allVersions, firstPage)).isInstanceOf(QueryTooExpensiveException.class);
+        assertThat(new QueryGuard(costEstimator, indexManager, false, 0, count - 1, true)
+                .mustPaginate(allVersions, firstPage)).isTrue();
+        assertThat(new QueryGuard(costEstimator, indexManager, false, 0, count, false)
+                .mustPaginate(allVersions, firstPage)).isFalse();
+
+        // Over the scan budget, counts and streams are rejected, but pages are not
+        QueryGuard scanBudget = new QueryGuard(costEstimator, indexManager, false, count - 1, count - 1, true);
+        assertThatThrownBy(() -> scanBudget.check(allVersions)).isInstanceOf(QueryTooExpensiveException.class);
+        assertThatThrownBy(() -> new QueryGuard(costEstimator, indexManager, false, count - 1, 0, true)
+                .mustPaginate(allVersions, firstPage)).isInstanceOf(QueryTooExpensiveException.class);
+        scanBudget.check(allVersions, firstPage);
+        assertThat(scanBudget.mustPaginate(allVersions, firstPage)).isTrue();
+
+        // In strict mode, unindexed attributes are refused
+        QueryGuard strict = new QueryGuard(costEstimator, indexManager, true, 0, 0, true);
+        strict.check(javaFilters);
+        assertThatThrownBy(() -> strict.check(new Filter[]{new LanguageFilter("isJvmBased", "eq", "true", null, null)}))
+                .isInstanceOf(QueryTooExpensiveException.class)
+                .hasMessageContaining("isJvmBased");
+    }
+
+    @Test
+    public void bulkIngest() throws IOException {
+        URI searchUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Ceylon\"}")
+                .build()
+                .toUri();
+        URI bulkUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/bulk")
+                .build()
+                .toUri();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.valueOf("application/x-ndjson"));
+
+        assertThat(getResponse(searchUrl).getBody()).isEqualTo("[]");
+        try {
+            String body = "{\"id\":\"ceylon-1\",\"language\":\"Ceylon\",\"version\":1,\"jvmBased\":true}\n" +
+                    "{\"language\":\"Ceylon\",\"version\":2,\"isJvmBased\":\"true\"}\n" +
+                    "\n" +
+                    "not json\n" +
+                    "{\"language\":\"Ceylon\",\"version\":\"three\",\"jvmBased\":true}\n" +
+                    "{\"language\":\"Ceylon\",\"version\":3,\"jvmBased\":true,\"extra\":1}";
+            ResponseEntity<String> response = restTemplate.exchange(bulkUrl, HttpMethod.POST,
+                    new HttpEntity<>(body, headers), String.class);
+            JsonNode report = new ObjectMapper().readTree(response.getBody());
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(report.get("records").asLong()).isEqualTo(5);
+            assertThat(report.get("written").asLong()).isEqualTo(2);
+            assertThat(report.get("invalid").asLong()).isEqualTo(3);
+            assertThat(report.get("errors").findValuesAsText("line")).containsExactly("4", "5", "6");
+            assertThat(report.get("errors").get(2).get("message").asText()).isEqualTo("Unknown field: extra");
+            assertThat(report.get("batches").get(0).get("written").asInt()).isEqualTo(2);
+
+            // Cached results are dropped
+            assertThat(getResponse(searchUrl).getBody())
+                    .contains("\"id\":\"ceylon-1\",\"language\":\"Ceylon\",\"version\":1")
+                    .contains("\"version\":2");
+
+            // Records with an ID replace the language
+            restTemplate.exchange(bulkUrl, HttpMethod.POST, new HttpEntity<>(
+                    "{\"id\":\"ceylon-1\",\"language\":\"Ceylon\",\"version\":4,\"jvmBased\":true}", headers),
+                    String.class);
+            assertThat(languageRepository.findById("ceylon-1").get().getVersion()).isEqualTo(4);
+            assertThat(operations.count(Query.query(Criteria.where("language").is("Ceylon")), Language.class))
+                    .isEqualTo(2);
+        } finally {
+            operations.remove(Query.query(Criteria.where("language").is("Ceylon")), Language.class);
+        }
+    }
+
+    @Test
+    public void exportAsBson() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/export")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .queryParam("format", "bson")
+                .build()
+                .toUri();
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(targetUrl, byte[].class);
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.valueOf("application/bson"));
+        // Concatenated documents, each led by its length
+        ByteBuffer bytes = ByteBuffer.wrap(response.getBody()).order(ByteOrder.LITTLE_ENDIAN);
+        List<RawBsonDocument> documents = new ArrayList<>();
+        while (bytes.hasRemaining()) {
+            int length = bytes.getInt(bytes.position());
+            documents.add(new RawBsonDocument(response.getBody(), bytes.position(), length));
+            bytes.position(bytes.position() + length);
+        }
+
+        assertThat(documents).hasSize((int) operations.count(
+                Query.query(Criteria.where("language").is("Java")), Language.class));
+        assertThat(documents).allSatisfy(document ->
+                assertThat(document.getString("language").getValue()).isEqualTo("Java"));
+    }
+
+    @Test
+    public void exportAsCompressedNdjson() throws IOException {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/export")
+                .queryParam("compression", "gzip")
+                .build()
+                .toUri();
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(targetUrl, byte[].class);
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(response.getBody())), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+
+        assertThat(lines).hasSize((int) operations.count(new Query(), Language.class));
+        assertThat(lines).allSatisfy(line -> assertThat(Document.parse(line)).containsKeys("_id", "language"));
+
+        // Unknown compression
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/export")
+                .queryParam("compression", "zstd")
+                .build()
+                .toUri();
+        assertThat(getResponse(targetUrl).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void exportToFile() throws IOException {
+        Path file = Files.createTempFile("language", ".ndjson");
+        try {
+            long count;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                count = exporter.export(new Filter[]{new LanguageFilter("version", "gte", 8, null, null)},
+                        ExportFormat.NDJSON, ExportCompression.NONE, channel);
+            }
+
+            assertThat(count).isEqualTo(operations.count(Query.query(Criteria.where("version").gte(8)), Language.class));
+            assertThat(Files.readAllLines(file)).hasSize((int) count);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void cacheMetricsAreExported() {
+        URI searchUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Groovy\"}")
+                .build()
+                .toUri();
+        getResponse(searchUrl);
+        getResponse(searchUrl);
+
+        URI metricsUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("actuator/metrics/cache.gets")
+                .queryParam("tag", "cache:languageSearchResponses")
+                .queryParam("tag", "result:hit")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(metricsUrl);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("\"statistic\":\"COUNT\"");
+        assertThat(response.getBody()).doesNotContain("\"value\":0.0");
+    }
+
+    @Test
+    public void streamWithGreaterThanEquals() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":7}")
+                .build()
+                .toUri();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, "application/x-ndjson");
+        ResponseEntity<String> response = restTemplate.exchange(targetUrl,
+                HttpMethod.GET, new HttpEntity<>(null, headers), String.class);
+
+        // One language per line
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().split("\n")).hasSize(2);
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+    }
+
+    @Test
+    public void searchWithFields() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("sort", "version")
+                .queryParam("size", 3)
+                .queryParam("fields", "language")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+
+        // Only the requested fields, though the sort key is still used for the token
+        assertThat(response.getHeaders().getFirst("X-Next-Page-Token")).isNotNull();
+        assertThat(response.getBody()).startsWith("[{\"language\":\"Kotlin\"}")
+                .doesNotContain("\"id\"", "\"version\"", "\"jvmBased\"");
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":7}")
+                .queryParam("fields", "language,version")
+                .build()
+                .toUri();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, "application/x-ndjson");
+        response = restTemplate.exchange(targetUrl,
+                HttpMethod.GET, new HttpEntity<>(null, headers), String.class);
+
+        // Streamed
+        assertThat(response.getBody()).contains("{\"language\":\"Java\",\"version\":7}\n")
+                .doesNotContain("\"id\"", "\"jvmBased\"");
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Kotlin\"}")
+                .queryParam("fields", "jvmBased")
+                .build()
+                .toUri();
+        response = getResponse(targetUrl);
+
+        // By the name responses use
+        assertThat(response.getBody()).isEqualTo("[{\"jvmBased\":true}]");
+    }
+
+    @Test
+    public void findByIds() throws IOException {
+        String java8ObjectId = getJsonValue(searchForJava8(), "id");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.exchange(createURLWithPort() + "/languages/batch",
+                HttpMethod.POST, new HttpEntity<>("[\"INVALID_ID\",\"" + java8ObjectId + "\"]", headers),
+                String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("{\"languages\":[{\"id\":\"" + java8ObjectId +
+                "\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}],\"missing\":[\"INVALID_ID\"]}");
+    }
+
+    @Test
+    public void findByIdsInChunks() throws IOException {
+        String java8ObjectId = getJsonValue(searchForJava8(), "id");
+        String groovyObjectId = getJsonValue(getResponse(UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Groovy\"}")
+                .build()
+                .toUri()).getBody(), "id");
+        LanguageSearchRepositoryImpl repository = new LanguageSearchRepositoryImpl(operations,
+                new QueryPlanCache(10), new LanguageReplica(operations, false, 0, 0, 0), SearchMetrics.disabled(),
+                SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 2);
+
+        assertThat(repository.findAllByIds(Arrays.asList(java8ObjectId, "INVALID_ID", groovyObjectId)))
+                .containsOnlyKeys(java8ObjectId, groovyObjectId);
+    }
+
+    @Test
+    public void countSearchResults() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = restTemplate.exchange(targetUrl, HttpMethod.HEAD, null, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst("X-Total-Count")).isEqualTo("2");
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    public void countAndGroup() throws JSONException {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/count")
+                .queryParam("filter", "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .build()
+                .toUri();
+
+        // Counted
+        JSONAssert.assertEquals("{\"count\":2}", getResponse(targetUrl).getBody(), true);
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/group")
+                .queryParam("by", "language")
+                .build()
+                .toUri();
+
+        // Counted per language
+        JSONAssert.assertEquals("[{\"value\":\"Groovy\",\"count\":1},{\"value\":\"Java\",\"count\":2}," +
+                "{\"value\":\"Kotlin\",\"count\":1}]", getResponse(targetUrl).getBody(), true);
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/group")
+                .queryParam("filter", "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":3}")
+                .queryParam("by", "isJvmBased")
+                .queryParam("field", "version")
+                .build()
+                .toUri();
+
+        // Filtered, with the version range per group
+        JSONAssert.assertEquals("[{\"value\":\"true\",\"count\":3,\"min\":3,\"max\":8}]",
+                getResponse(targetUrl).getBody(), true);
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("languages/group")
+                .queryParam("by", "INVALID_ATTRIBUTE")
+                .build()
+                .toUri();
+
+        assertThat(getResponse(targetUrl).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     private String createURLWithPort() {
         return "http://localhost:" + port;
     }
@@ -0,0 +1,197 @@
+package io.tradeledger.searchfacade;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.replica.LanguageReplica;
+import io.tradeledger.searchfacade.repository.LanguageRepository;
+import io.tradeledger.searchfacade.repository.LanguageSearchRepositoryImpl;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class LanguageReplicaTests {
+
+    private static final LanguageSchema SCHEMA = new LanguageSchema("isJvmBased:string");
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Autowired
+    private LanguageRepository languageRepository;
+
+    private LanguageReplica replica;
+    private LanguageSearchRepositoryImpl mongo;
+    private LanguageSearchRepositoryImpl replicated;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        replica = new LanguageReplica(operations, true, 1000, 100, 100);
+        replica.start();
+        awaitColumns();
+
+        mongo = new LanguageSearchRepositoryImpl(operations, new QueryPlanCache(10),
+                new LanguageReplica(operations, false, 0, 0, 0), SearchMetrics.disabled(),
+                SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 500);
+        replicated = new LanguageSearchRepositoryImpl(operations, new QueryPlanCache(10), replica,
+                SearchMetrics.disabled(), SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 500);
+    }
+
+    @After
+    public void tearDown() {
+        replica.stop();
+    }
+
+    @Test
+    public void searchesMatchMongo() {
+        Filter[][] searches = {
+                {new LanguageFilter("language", "eq", "Java", null, null)},
+                {new LanguageFilter("version", "eq", null, 2, 7)},
+                {new LanguageFilter("isJvmBased", "eq", "true", null, null),
+                        new LanguageFilter("version", "gte", 3, null, null)},
+                {new LanguageFilter("isJvmBased", "eq", true, null, null)}};
+
+        for (Filter[] filters : searches) {
+            assertThat(replica.search(filters, SearchPageRequest.first(10))).isPresent();
+            assertThat(readAllPages(replicated, filters, "version"))
+                    .isEqualTo(readAllPages(mongo, filters, "version"));
+            assertThat(readAllPages(replicated, filters, null))
+                    .isEqualTo(readAllPages(mongo, filters, null));
+            assertThat(replica.count(filters)).contains(mongo.count(filters));
+        }
+    }
+
+    @Test
+    public void writesAreReplicated() throws InterruptedException {
+        Filter[] filters = {new LanguageFilter("language", "eq", "Clojure", null, null)};
+        Language clojure = languageRepository.save(new Language(null, "Clojure", 1, true));
+
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (replica.search(filters, SearchPageRequest.first(10))
+                    .map(page -> page.getContent().isEmpty()).orElse(true)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertThat(replicated.search(filters)).extracting(Language::getId).containsExactly(clojure.getId());
+        } finally {
+            languageRepository.delete(clojure);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changesAreAppliedInBatches() throws InterruptedException {
+        MongoOperations followed = mock(MongoOperations.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class, RETURNS_DEEP_STUBS);
+        MongoCursor<ChangeStreamDocument<Document>> cursor = mock(MongoCursor.class);
+        when(followed.getCollectionName(Language.class)).thenReturn("language");
+        when(followed.getCollection("language")).thenReturn(collection);
+        when(collection.watch().fullDocument(any()).maxAwaitTime(anyLong(), any()).iterator()).thenReturn(cursor);
+        when(collection.find().into(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // A bulk insert, then an update and a delete
+        List<ChangeStreamDocument<Document>> changes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            changes.add(change(OperationType.INSERT, "language" + i, i));
+        }
+        changes.add(change(OperationType.REPLACE, "language1", 11));
+        changes.add(change(OperationType.DELETE, "language2", 0));
+        when(cursor.tryNext()).thenReturn(changes.get(0), changes.subList(1, changes.size())
+                .toArray(new ChangeStreamDocument[0])).thenReturn(null);
+
+        LanguageReplica batched = new LanguageReplica(followed, true, 1000, 100, 100);
+        batched.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (batched.getChangeCount() < 1 + changes.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // Loaded, then rebuilt once with all changes
+            assertThat(batched.getChangeCount()).isEqualTo(1 + changes.size());
+            assertThat(batched.getRebuildCount()).isEqualTo(2);
+            assertThat(batched.getColumns()).hasValueSatisfying(columns -> assertThat(columns.size()).isEqualTo(99));
+            assertThat(batched.count(new Filter[]{new LanguageFilter("version", "eq", 11, null, null)}))
+                    .contains(2L);
+        } finally {
+            batched.stop();
+        }
+    }
+
+    @Test
+    public void staleReplicaFallsBackToMongo() {
+        replica.stop();
+        LanguageReplica stale = new LanguageReplica(operations, true, 0, 100, 100);
+
+        // Never loaded
+        assertThat(stale.getColumns()).isNotPresent();
+        assertThat(new LanguageSearchRepositoryImpl(operations, new QueryPlanCache(10), stale,
+                SearchMetrics.disabled(), SlowQueryLog.disabled(),
+                AdaptiveConcurrencyLimit.unlimited(), 500)
+                .search(new Filter[]{new LanguageFilter("language", "eq", "Java", null, null)})).hasSize(2);
+    }
+
+    private static ChangeStreamDocument<Document> change(OperationType type, String id, int version) {
+        return new ChangeStreamDocument<>(new BsonDocument(), null,
+                type == OperationType.DELETE ? null : new Document("_id", id).append("language", "Scala")
+                        .append("version", version),
+                new BsonDocument("_id", new BsonString(id)), type, null);
+    }
+
+    private void awaitColumns() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!replica.getColumns().isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(replica.getColumns()).isPresent();
+    }
+
+    private static List<String> readAllPages(LanguageSearchRepositoryImpl repository, Filter[] filters, String sort) {
+        SearchPage<Language> page = repository.search(filters, SearchPageRequest.of(SCHEMA, sort, null, 2));
+        List<Language> languages = new ArrayList<>(page.getContent());
+
+        while (page.getNextPageToken().isPresent()) {
+            page = repository.search(filters, SearchPageRequest.of(SCHEMA, null, page.getNextPageToken().get(), 2));
+            languages.addAll(page.getContent());
+        }
+
+        return languages.stream().map(Language::toString).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.exception.InvalidParameterException;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.FilterOperator;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.OrFilter;
+import io.tradeledger.searchfacade.repository.QueryPlan;
+import io.tradeledger.searchfacade.repository.QueryPlanCache;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryPlanCacheTests {
+
+    @Test
+    public void sameShapeSharesPlan() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        Filter[] java = {new LanguageFilter("language", "eq", "Java", null, null),
+                new LanguageFilter("version", "eq", null, 7, 8)};
+        Filter[] kotlin = {new LanguageFilter("version", "eq", null, 1, 2),
+                new LanguageFilter("language", "eq", "Kotlin", null, null)};
+
+        QueryPlan plan = cache.getPlan(java);
+
+        // Different values and order, same shape
+        assertThat(cache.getPlan(kotlin)).isSameAs(plan);
+        assertThat(plan.getShape()).isEqualTo("language:eq:string,version:range");
+        assertThat(plan.getAttributes()).containsExactly("language", "version");
+        assertThat(cache.size()).isEqualTo(1);
+
+        // Different value type
+        Filter[] version = {new LanguageFilter("language", "eq", 8, null, null),
+                new LanguageFilter("version", "eq", null, 7, 8)};
+
+        assertThat(cache.getPlan(version)).isNotSameAs(plan);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void bindMatchesCriteria() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        Filter[] filters = {new LanguageFilter("language", FilterOperator.IN, Arrays.asList("Java", "Kotlin"), null, null),
+                new LanguageFilter("version", "gte", 7, null, null),
+                new LanguageFilter("isJvmBased", "eq", null, 1, 4)};
+
+        Query expected = new Query();
+        for (Filter filter : filters) {
+            expected.addCriteria(filter.getCriteria());
+        }
+
+        assertThat(cache.getPlan(filters).bind(filters).getQueryObject())
+                .isEqualTo(expected.getQueryObject());
+    }
+
+    @Test
+    public void otherFiltersAreDistributedIntoOrGroup() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        LanguageFilter java = new LanguageFilter("language", "eq", "Java", null, null);
+        LanguageFilter version = new LanguageFilter("version", "gte", 11, null, null);
+        Filter[] filters = {new OrFilter(java, version), new LanguageFilter("isJvmBased", "eq", "true", null, null)};
+
+        QueryPlan plan = cache.getPlan(filters);
+
+        // Branches in another order share the plan
+        assertThat(cache.getPlan(new Filter[]{filters[1], new OrFilter(version, java)})).isSameAs(plan);
+        assertThat(plan.isDistributed()).isTrue();
+        assertThat(plan.getIndexKeys()).containsExactly("isJvmBased");
+        assertThat(plan.bind(filters).getQueryObject()).isEqualTo(new Document("$or", Arrays.asList(
+                new Document("isJvmBased", "true").append("language", "Java"),
+                new Document("isJvmBased", "true").append("version", new Document("$gte", 11)))));
+
+        // A branch on an attribute of another filter
+        Filter[] overlapping = {new OrFilter(java, version), new LanguageFilter("version", "lte", 17, null, null)};
+
+        assertThat(cache.getPlan(overlapping).isDistributed()).isFalse();
+        assertThat(cache.getPlan(overlapping).bind(overlapping).getQueryObject()).isEqualTo(
+                new Document("version", new Document("$lte", 17)).append("$or", Arrays.asList(
+                        new Document("language", "Java"), new Document("version", new Document("$gte", 11)))));
+
+        // Several groups
+        Filter[] groups = {new OrFilter(java, version),
+                new OrFilter(new LanguageFilter("isJvmBased", "eq", "true", null, null),
+                        new LanguageFilter("version", "lte", 8, null, null))};
+
+        assertThat(cache.getPlan(groups).bind(groups).getQueryObject())
+                .containsOnlyKeys("$and");
+    }
+
+    @Test
+    public void sampleIsNotChangedByItsQuery() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        Filter[] filters = {new LanguageFilter("language", "eq", "Java", null, null)};
+        QueryPlan plan = cache.getPlan(filters);
+
+        plan.bind(filters).addCriteria(Criteria.where("_id").gt("token"));
+
+        assertThat(plan.getSample()).isEqualTo(new Document("language", "Java"));
+    }
+
+    @Test
+    public void duplicateAttributesAreRejected() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        Filter[] filters = {new LanguageFilter("language", "eq", "Java", null, null),
+                new LanguageFilter("language", "eq", "Kotlin", null, null)};
+
+        assertThatThrownBy(() -> cache.getPlan(filters))
+                .isInstanceOf(InvalidParameterException.class);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        QueryPlanCache cache = new QueryPlanCache(1);
+        Filter[] language = {new LanguageFilter("language", "eq", "Java", null, null)};
+        Filter[] version = {new LanguageFilter("version", "eq", 8, null, null)};
+
+        cache.getPlan(language);
+        QueryPlan plan = cache.getPlan(version);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(plan.bind(version).getQueryObject().get("version")).isEqualTo(8);
+    }
+
+    @Test
+    public void newShapesAreCachedOnceFull() {
+        QueryPlanCache cache = new QueryPlanCache(1);
+        Filter[] language = {new LanguageFilter("language", "eq", "Java", null, null)};
+        Filter[] version = {new LanguageFilter("version", "eq", 8, null, null)};
+
+        cache.getPlan(language);
+        // Searched more often than the cached shape, so it displaces it
+        for (int i = 0; i < 10; i++) {
+            cache.getPlan(version);
+            cache.size();
+        }
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getPlans()).extracting(QueryPlan::getShape).containsExactly("version:eq:number");
+        assertThat(cache.getPlan(version)).isSameAs(cache.getPlan(version));
+    }
+
+}
@@ -0,0 +1,102 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.admission.QueryCostEstimator;
+import io.tradeledger.searchfacade.admission.QueryGuard;
+import io.tradeledger.searchfacade.admission.RateLimiter;
+import io.tradeledger.searchfacade.controller.LanguageController;
+import io.tradeledger.searchfacade.controller.ReactiveLanguageController;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.filter.LanguageSchema;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import io.tradeledger.searchfacade.model.Language;
+import io.tradeledger.searchfacade.repository.ContinuationToken;
+import io.tradeledger.searchfacade.repository.ReactiveLanguageRepository;
+import io.tradeledger.searchfacade.repository.SearchPage;
+import io.tradeledger.searchfacade.repository.SearchPageRequest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(ReactiveLanguageController.class)
+public class ReactiveLanguageControllerTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private ReactiveLanguageRepository languageRepository;
+
+    @MockBean
+    private SearchMetrics searchMetrics;
+
+    @MockBean
+    private RateLimiter rateLimiter;
+
+    @MockBean
+    private QueryCostEstimator costEstimator;
+
+    @MockBean
+    private QueryGuard guard;
+
+    @TestConfiguration
+    static class SchemaConfig {
+
+        @Bean
+        public LanguageSchema languageSchema() {
+            return new LanguageSchema("isJvmBased:string");
+        }
+
+    }
+
+    @Test
+    public void streamOverBudgetReturnsFirstPage() throws Exception {
+        Filter[] filters = {new LanguageFilter("version", "gte", 0, null, null)};
+        when(guard.mustPaginate(filters, SearchPageRequest.first(100))).thenReturn(true);
+        when(languageRepository.search(filters, SearchPageRequest.first(100)))
+                .thenReturn(Mono.just(new SearchPage<>(Collections.singletonList(new Language("1", "Java", 8, true)),
+                        new ContinuationToken("_id", "1", "1").encode())));
+        String filter = "{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":0}";
+
+        // Answered once the page arrives, without holding the request thread
+        MvcResult result = mvc.perform(get("/reactive/languages/search?filter={filter}", filter)
+                .accept(MediaType.APPLICATION_STREAM_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult page = mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(header().string(LanguageController.NEXT_PAGE_TOKEN,
+                        new ContinuationToken("_id", "1", "1").encode()))
+                .andReturn();
+
+        // The body is then streamed from the page
+        page.getAsyncResult(5000);
+        assertThat(page.getResponse().getContentAsString())
+                .isEqualTo("{\"id\":\"1\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}\n");
+        verify(languageRepository, times(0)).search(any());
+    }
+
+}
@@ -0,0 +1,281 @@
+package io.tradeledger.searchfacade;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.tradeledger.searchfacade.admission.AdaptiveConcurrencyLimit;
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveLanguageIntegrationTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AdaptiveConcurrencyLimit queryLimit;
+
+    @Test
+    public void findById() throws JSONException, IOException {
+        String java8ObjectId = getJsonValue(search("{\"attribute\":\"version\"," +
+                "\"operator\":\"eq\",\"value\":8}").getBody(), "id");
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/" + java8ObjectId)
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+        String expected = "{\"id\":\"" + java8ObjectId
+                + "\",\"language\":\"Java\",\"version\":8,\"jvmBased\":true}";
+
+        // Language found
+        JSONAssert.assertEquals(expected, response.getBody(), true);
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/INVALID_ID")
+                .build()
+                .toUri();
+        response = getResponse(targetUrl);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void searchWithEqualsAndValue() {
+        // Language found
+        assertThat(search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}").getBody())
+                .contains("\"language\":\"Java\",\"version\":7");
+
+        // Language not found
+        assertThat(search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"INVALID_LANGUAGE\"}").getBody())
+                .isEqualTo("[]");
+    }
+
+    @Test
+    public void searchWithEqualsAndRange() {
+        String body = search("{\"attribute\":\"version\",\"operator\":\"eq\",\"range\":{\"from\":7,\"to\":8}}")
+                .getBody();
+
+        // Languages found
+        assertThat(body).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(body).contains("\"language\":\"Java\",\"version\":8");
+
+        // Language not found
+        assertThat(search("{\"attribute\":\"version\",\"operator\":\"eq\",\"range\":{\"from\":-1,\"to\":0}}")
+                .getBody()).isEqualTo("[]");
+    }
+
+    @Test
+    public void searchWithGreaterThanAndLowerThanEquals() {
+        assertThat(search("{\"attribute\":\"version\",\"operator\":\"gte\",\"value\":8}").getBody())
+                .contains("\"language\":\"Java\",\"version\":8")
+                .doesNotContain("\"version\":7");
+
+        assertThat(search("{\"attribute\":\"version\",\"operator\":\"lte\",\"value\":7}").getBody())
+                .contains("\"language\":\"Java\",\"version\":7")
+                .doesNotContain("\"version\":8");
+    }
+
+    @Test
+    public void searchWithBoolean() {
+        // Language found
+        assertThat(search("{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":\"true\"}").getBody())
+                .contains("\"language\":\"Java\",\"version\":7");
+
+        // Language not found
+        assertThat(search("{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":\"false\"}").getBody())
+                .isEqualTo("[]");
+    }
+
+    @Test
+    public void searchWithTwoFilters() {
+        String body = search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}",
+                "{\"attribute\":\"version\",\"operator\":\"eq\",\"range\":{\"from\":7,\"to\":8}}").getBody();
+
+        // Languages found
+        assertThat(body).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(body).contains("\"language\":\"Java\",\"version\":8");
+    }
+
+    @Test
+    public void searchWithInvalidFilters() {
+        // Duplicate attributes
+        assertThat(search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}",
+                "{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}").getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+
+        // Invalid operator
+        assertThat(search("{\"attribute\":\"language\",\"operator\":\"INVALID_OPERATOR\",\"value\":\"Java\"}")
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void searchesAreMeasured() throws IOException {
+        assertThat(search("{\"attribute\":\"isJvmBased\",\"operator\":\"eq\",\"value\":true}",
+                "{\"attribute\":\"language\",\"operator\":\"lte\",\"value\":\"Z\"}").getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        URI metricsUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("actuator/search")
+                .build()
+                .toUri();
+        JsonNode shape = new ObjectMapper().readTree(getResponse(metricsUrl).getBody())
+                .path("shapes").path("isJvmBased:eq,language:lte");
+
+        // Planned and sent to MongoDB, as blocking searches are
+        assertThat(shape.path("stages").has("plan")).isTrue();
+        assertThat(shape.path("stages").has("mongo")).isTrue();
+        assertThat(shape.path("documents").path("count").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    public void searchByPage() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("sort", "version")
+                .queryParam("size", 3)
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+        String nextPageToken = response.getHeaders().getFirst("X-Next-Page-Token");
+
+        // First page
+        assertThat(nextPageToken).isNotNull();
+        assertThat(response.getBody()).doesNotContain("\"version\":8");
+
+        targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":0}")
+                .queryParam("size", 3)
+                .queryParam("pageToken", nextPageToken)
+                .build()
+                .toUri();
+        response = getResponse(targetUrl);
+
+        // Last page
+        assertThat(response.getHeaders().getFirst("X-Next-Page-Token")).isNull();
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+    }
+
+    @Test
+    public void searchWithFields() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search")
+                .queryParam("filter", "{\"attribute\":\"language\"," +
+                        "\"operator\":\"eq\",\"value\":\"Kotlin\"}")
+                .queryParam("fields", "language,jvmBased")
+                .build()
+                .toUri();
+        ResponseEntity<String> response = getResponse(targetUrl);
+
+        // Fields left out are not written
+        assertThat(response.getBody()).isEqualTo("[{\"language\":\"Kotlin\",\"jvmBased\":true}]");
+    }
+
+    @Test
+    public void searchAcceptingAnyMediaType() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":7}")
+                .build()
+                .toUri();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.ALL));
+        ResponseEntity<String> response = restTemplate.exchange(targetUrl,
+                HttpMethod.GET, new HttpEntity<>(null, headers), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(response.getBody()).startsWith("[");
+    }
+
+    @Test
+    public void streamSearchResults() {
+        URI targetUrl = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search")
+                .queryParam("filter", "{\"attribute\":\"version\"," +
+                        "\"operator\":\"gte\",\"value\":7}")
+                .build()
+                .toUri();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_STREAM_JSON));
+        ResponseEntity<String> response = restTemplate.exchange(targetUrl,
+                HttpMethod.GET, new HttpEntity<>(null, headers), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":7");
+        assertThat(response.getBody()).contains("\"language\":\"Java\",\"version\":8");
+    }
+
+    @Test
+    public void searchesAreRejectedOverConcurrencyLimit() {
+        List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+        try {
+            // Take every slot, as if as many queries were in flight
+            while (permits.size() < queryLimit.getLimit()) {
+                permits.add(queryLimit.acquire());
+            }
+
+            ResponseEntity<String> response = search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}");
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+        }
+
+        // Admitted again once the slots are released
+        assertThat(search("{\"attribute\":\"language\",\"operator\":\"eq\",\"value\":\"Java\"}")
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private ResponseEntity<String> search(String... filters) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(createURLWithPort())
+                .path("reactive/languages/search");
+
+        for (String filter : filters) {
+            builder.queryParam("filter", filter);
+        }
+
+        return getResponse(builder.build().toUri());
+    }
+
+    private String createURLWithPort() {
+        return "http://localhost:" + port;
+    }
+
+    private ResponseEntity<String> getResponse(URI targetUrl) {
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+        return restTemplate.exchange(targetUrl,
+                HttpMethod.GET, entity, String.class);
+    }
+
+    private String getJsonValue(String json, String nodeName) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode actualObj = mapper.readTree(json);
+        return actualObj.findPath(nodeName).asText();
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.tradeledger.searchfacade;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.metrics.SearchMetrics;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SearchMetricsTests {
+
+    private static final Filter[] FILTERS = {
+            new LanguageFilter("version", "gte", 7, null, null),
+            new LanguageFilter("language", "eq", "Java", null, null)};
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        SearchMetrics metrics = new SearchMetrics(registry, null, false, 100, 1);
+
+        metrics.stop(SearchMetrics.MONGO, FILTERS, metrics.start());
+        metrics.recordDocuments(FILTERS, 2);
+        metrics.sampleExecutionStats(FILTERS, new BasicQuery("{}"));
+
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    public void stagesAreLabelledByOperatorShape() {
+        SearchMetrics metrics = new SearchMetrics(registry, null, true, 100, 0);
+
+        metrics.stop(SearchMetrics.MONGO, FILTERS, metrics.start());
+        metrics.stop(SearchMetrics.MONGO, new Filter[]{FILTERS[1], FILTERS[0]}, metrics.start());
+        metrics.recordDocuments(FILTERS, 2);
+
+        assertThat(registry.find("searchfacade.search")
+                .tags("stage", "mongo", "shape", "language:eq,version:gte")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.find("searchfacade.search.documents")
+                .tags("shape", "language:eq,version:gte")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shapesAreCapped() {
+        SearchMetrics metrics = new SearchMetrics(registry, null, true, 1, 0);
+
+        metrics.stop(SearchMetrics.MONGO, FILTERS, metrics.start());
+        metrics.stop(SearchMetrics.MONGO, new Filter[]{FILTERS[0]}, metrics.start());
+
+        assertThat(registry.find("searchfacade.search").tags("shape", "language:eq,version:gte").timer())
+                .isNotNull();
+        assertThat(registry.find("searchfacade.search").tags("shape", "other").timer())
+                .isNotNull();
+    }
+
+    @Test
+    public void executionStatsAreSampled() throws InterruptedException {
+        MongoOperations operations = mock(MongoOperations.class);
+        when(operations.getConverter())
+                .thenReturn(new MappingMongoConverter(mock(DbRefResolver.class), new MongoMappingContext()));
+        when(operations.getCollectionName(any())).thenReturn("language");
+        List<String> explainedOn = new CopyOnWriteArrayList<>();
+        when(operations.executeCommand(any(Document.class))).thenAnswer(invocation -> {
+            explainedOn.add(Thread.currentThread().getName());
+            return new Document("executionStats", new Document("nReturned", 2).append("executionTimeMillis", 0)
+                    .append("totalKeysExamined", 2).append("totalDocsExamined", 5));
+        });
+        SearchMetrics metrics = new SearchMetrics(registry, operations, true, 100, 2);
+
+        metrics.sampleExecutionStats(FILTERS, new BasicQuery("{\"language\": \"Java\"}"));
+        BasicQuery query = new BasicQuery("{\"language\": \"Java\"}");
+        metrics.sampleExecutionStats(FILTERS, query);
+        // Restricted further by the caller once sampled
+        query.addCriteria(Criteria.where("version").is(8));
+
+        verify(operations, timeout(5000).times(1)).executeCommand(argThat((Document command) ->
+                command.get("explain", Document.class).get("filter", Document.class)
+                        .equals(new Document("language", "Java"))));
+        assertThat(explainedOn).doesNotContain(Thread.currentThread().getName());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.find("searchfacade.search.docs-examined").summary() == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.find("searchfacade.search.docs-examined")
+                .tags("shape", "language:eq,version:gte")
+                .summary().totalAmount()).isEqualTo(5);
+        metrics.shutdown();
+    }
+
+}
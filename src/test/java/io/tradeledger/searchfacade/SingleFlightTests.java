@@ -0,0 +1,82 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.cache.SingleFlight;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTests {
+
+    @Test
+    public void concurrentCallsAreCoalesced() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return new Object();
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Object> duplicate = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            calls.incrementAndGet();
+            return new Object();
+        }));
+        // Give the duplicate time to join the call in flight
+        Thread.sleep(100);
+        release.countDown();
+
+        // Same result from a single call
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(flight.size()).isEqualTo(0);
+
+        // Nothing is kept once the call completes
+        flight.execute("key", () -> calls.incrementAndGet());
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void exceptionsAreShared() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("failed");
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Object> duplicate = CompletableFuture.supplyAsync(() ->
+                flight.execute("key", Object::new));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(flight.size()).isEqualTo(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
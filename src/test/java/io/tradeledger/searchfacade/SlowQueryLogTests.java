@@ -0,0 +1,122 @@
+package io.tradeledger.searchfacade;
+
+import io.tradeledger.searchfacade.filter.Filter;
+import io.tradeledger.searchfacade.filter.LanguageFilter;
+import io.tradeledger.searchfacade.metrics.SlowQuery;
+import io.tradeledger.searchfacade.metrics.SlowQueryLog;
+import org.bson.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.rule.OutputCapture;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SlowQueryLogTests {
+
+    private static final Filter[] FILTERS = {
+            new LanguageFilter("version", "gte", 7, null, null),
+            new LanguageFilter("language", "eq", "Java", null, null)};
+
+    @Rule
+    public OutputCapture output = new OutputCapture();
+
+    @Test
+    public void fastQueriesAreNotKept() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(null, 1000, 10);
+
+        slowQueryLog.record(FILTERS, new BasicQuery("{}"), System.nanoTime(), 2);
+
+        assertThat(slowQueryLog.getSlowQueries()).isEmpty();
+    }
+
+    @Test
+    public void slowQueriesAreKeptAndExplained() throws InterruptedException {
+        MongoOperations operations = mockOperations();
+        when(operations.executeCommand(any(Document.class))).thenReturn(new Document("queryPlanner",
+                new Document("winningPlan", new Document("stage", "COLLSCAN"))));
+        SlowQueryLog slowQueryLog = new SlowQueryLog(operations, 0, 2);
+
+        for (int version = 7; version <= 9; version++) {
+            slowQueryLog.record(FILTERS, new BasicQuery("{\"version\": " + version + "}"), System.nanoTime(), 1);
+        }
+        List<SlowQuery> slowQueries = slowQueryLog.getSlowQueries();
+
+        // Most recent first, the oldest dropped
+        assertThat(slowQueries).extracting(SlowQuery::getQuery)
+                .containsExactly("Query: { \"version\" : 9 }, Fields: { }, Sort: { }",
+                        "Query: { \"version\" : 8 }, Fields: { }, Sort: { }");
+        assertThat(slowQueries.get(0).getShape()).isEqualTo("language:eq:string,version:gte:number");
+
+        // Explained in the background
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (slowQueries.get(0).getWinningPlan() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(slowQueries.get(0).getWinningPlan()).isEqualTo(new Document("stage", "COLLSCAN"));
+    }
+
+    @Test
+    public void slowQueriesAreLoggedWhileExplainsFallBehind() throws InterruptedException {
+        CountDownLatch explaining = new CountDownLatch(1);
+        MongoOperations operations = mockOperations();
+        when(operations.executeCommand(any(Document.class))).then(invocation -> {
+            explaining.await();
+            return new Document();
+        });
+        SlowQueryLog slowQueryLog = new SlowQueryLog(operations, 0, 50);
+
+        try {
+            // Far more than can wait to be explained
+            for (int version = 0; version < 40; version++) {
+                slowQueryLog.record(FILTERS, new BasicQuery("{\"version\": " + version + "}"), System.nanoTime(), 1);
+            }
+
+            assertThat(output.toString()).contains("Slow query:", "Query: { \"version\" : 0 }",
+                    "Query: { \"version\" : 39 }");
+        } finally {
+            explaining.countDown();
+            slowQueryLog.stop();
+        }
+    }
+
+    @Test
+    public void slowQueriesAreExplainedAsRun() {
+        MongoOperations operations = mockOperations();
+        when(operations.executeCommand(any(Document.class))).thenReturn(new Document());
+        SlowQueryLog slowQueryLog = new SlowQueryLog(operations, 0, 2);
+        BasicQuery query = new BasicQuery("{\"version\": 8}");
+        query.limit(2);
+
+        slowQueryLog.record(FILTERS, query, System.nanoTime(), 1);
+        // Callers reuse their query, e.g. for the next page
+        query.limit(5);
+
+        ArgumentCaptor<Document> command = ArgumentCaptor.forClass(Document.class);
+        verify(operations, timeout(5000)).executeCommand(command.capture());
+        assertThat(command.getValue().get("explain", Document.class).get("limit")).isEqualTo(2);
+    }
+
+    private static MongoOperations mockOperations() {
+        MongoOperations operations = mock(MongoOperations.class);
+        when(operations.getConverter())
+                .thenReturn(new MappingMongoConverter(mock(DbRefResolver.class), new MongoMappingContext()));
+        when(operations.getCollectionName(any())).thenReturn("language");
+        return operations;
+    }
+
+}